@@ -0,0 +1,119 @@
+package org.leafuke.mineBackupPlugin;
+
+import org.bukkit.World;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking world save for servers whose runtime exposes the Mojang-mapped level internals
+ * (Paper and its forks). Dirty chunks are serialized and queued to the server's region I/O
+ * worker on the main thread; the returned future completes once that worker has written them,
+ * so region I/O no longer stalls the tick. Plain Spigot runs obfuscated internals, detection
+ * fails, and callers fall back to {@link World#save()}.
+ */
+final class AsyncWorldSaver {
+    private static final ClassValue<Hooks> HOOKS = new ClassValue<>() {
+        @Override
+        protected Hooks computeValue(Class<?> worldClass) {
+            return detect(worldClass);
+        }
+    };
+
+    private AsyncWorldSaver() {
+    }
+
+    static boolean isSupported(World world) {
+        return resolveHooks(world).supported();
+    }
+
+    static String getUnsupportedReason(World world) {
+        return resolveHooks(world).unsupportedReason();
+    }
+
+    /**
+     * Must run on the primary thread. Throws when the reflective call fails so the caller can fall
+     * back to a synchronous save of that world.
+     */
+    @SuppressWarnings("unchecked")
+    static CompletableFuture<Void> save(World world) throws ReflectiveOperationException {
+        Hooks resolved = resolveHooks(world);
+        if (!resolved.supported()) {
+            throw new IllegalStateException("Async world save is not supported: " + resolved.unsupportedReason());
+        }
+
+        Object level = resolved.getHandle().invoke(world);
+        resolved.saveLevel().invoke(level, null, false, false);
+        Object chunkSource = resolved.getChunkSource().invoke(level);
+        Object chunkMap = resolved.chunkMap().get(chunkSource);
+        return ((CompletableFuture<?>) resolved.synchronize().invoke(chunkMap, true)).thenApply(ignored -> null);
+    }
+
+    /**
+     * Starts an async save of each world, in order. A world whose save cannot be started is put in
+     * {@code failedWorlds} with the cause, for the caller to save synchronously; the others are returned with
+     * their pending region writes.
+     */
+    static Map<World, CompletableFuture<Void>> saveAll(List<World> worlds, Map<World, Exception> failedWorlds) {
+        Map<World, CompletableFuture<Void>> pendingWrites = new LinkedHashMap<>();
+        for (World world : worlds) {
+            try {
+                pendingWrites.put(world, save(world));
+            } catch (Exception e) {
+                failedWorlds.put(world, e);
+            }
+        }
+        return pendingWrites;
+    }
+
+    private static Hooks resolveHooks(World world) {
+        return HOOKS.get(world.getClass());
+    }
+
+    private static Hooks detect(Class<?> worldClass) {
+        try {
+            Method getHandle = worldClass.getMethod("getHandle");
+            Class<?> levelClass = getHandle.getReturnType();
+
+            Method saveLevel = null;
+            for (Method method : levelClass.getMethods()) {
+                Class<?>[] parameters = method.getParameterTypes();
+                if (method.getName().equals("save") && parameters.length == 3
+                        && !parameters[0].isPrimitive()
+                        && parameters[1] == boolean.class && parameters[2] == boolean.class) {
+                    saveLevel = method;
+                    break;
+                }
+            }
+            if (saveLevel == null) {
+                return Hooks.unsupported("level save(ProgressListener, boolean, boolean) not found");
+            }
+
+            Method getChunkSource = levelClass.getMethod("getChunkSource");
+            Field chunkMap = getChunkSource.getReturnType().getField("chunkMap");
+            Method synchronize = chunkMap.getType().getMethod("synchronize", boolean.class);
+            if (!CompletableFuture.class.isAssignableFrom(synchronize.getReturnType())) {
+                return Hooks.unsupported("chunk storage synchronize(boolean) does not return a future");
+            }
+            return new Hooks(true, null, getHandle, saveLevel, getChunkSource, chunkMap, synchronize);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Hooks.unsupported(e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    private record Hooks(boolean supported,
+                         String unsupportedReason,
+                         Method getHandle,
+                         Method saveLevel,
+                         Method getChunkSource,
+                         Field chunkMap,
+                         Method synchronize) {
+        private static Hooks unsupported(String reason) {
+            return new Hooks(false, reason, null, null, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package org.leafuke.mineBackupPlugin;
+
+import net.md_5.bungee.api.ChatMessageType;
+import net.md_5.bungee.api.chat.TextComponent;
+import org.bukkit.Bukkit;
+import org.bukkit.boss.BarColor;
+import org.bukkit.boss.BarStyle;
+import org.bukkit.boss.BossBar;
+import org.bukkit.entity.Player;
+import org.leafuke.mineBackupPlugin.scheduler.PluginScheduler;
+import org.leafuke.mineBackupPlugin.scheduler.TaskHandle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shows the backend's {@code backup_progress} events to players in a boss bar or the action bar. Events only
+ * replace the latest known progress, however fast they arrive; a render task running every
+ * {@code backup.progress.update-interval-ticks} draws whatever is newest, formatting the text once per client
+ * locale. The task exists only while a backup is running and stops on completion, or once the backend has been
+ * silent for the freeze timeout.
+ */
+public final class BackupProgressDisplay {
+    private static final String[] BYTE_UNITS = {"B", "KiB", "MiB", "GiB", "TiB"};
+
+    private final MineBackupPlugin plugin;
+    private final BackupLogger logger;
+    private final PluginScheduler scheduler;
+    private final LanguageManager languageManager;
+
+    private final AtomicReference<Progress> latest = new AtomicReference<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicBoolean rendering = new AtomicBoolean(false);
+    /** Set once the backup finished, so late progress events cannot restart the display until the next backup. */
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+
+    private final Map<String, BossBar> bossBars = new HashMap<>();
+    private TaskHandle renderTask;
+    private long renderedSequence;
+    private long renderCount;
+
+    public BackupProgressDisplay(MineBackupPlugin plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getBackupLogger();
+        this.scheduler = plugin.getPluginScheduler();
+        this.languageManager = plugin.getLanguageManager();
+    }
+
+    /** Called on {@code pre_hot_backup}; progress is accepted again from here on. */
+    public void begin() {
+        finished.set(false);
+    }
+
+    /** Called on the KnotLink reader thread for every {@code backup_progress} event. */
+    public void onProgress(Map<String, String> eventData) {
+        if (finished.get() || "none".equals(Config.getBackupProgressDisplay())) {
+            return;
+        }
+
+        latest.set(Progress.parse(sequence.incrementAndGet(), System.currentTimeMillis(), eventData));
+        if (rendering.compareAndSet(false, true) && plugin.isEnabled()) {
+            scheduler.runGlobal(this::startRendering);
+        }
+    }
+
+    /** Called when the backup finished, successfully or not. */
+    public void finish() {
+        finished.set(true);
+        latest.set(null);
+        if (rendering.get() && plugin.isEnabled()) {
+            scheduler.runGlobal(this::stop);
+        }
+    }
+
+    public void stop() {
+        if (renderTask != null) {
+            renderTask.cancel();
+            renderTask = null;
+            logger.debug("BACKUP", "Progress display stopped after " + renderCount
+                    + " renders (last progress event #" + renderedSequence + ").");
+        }
+        for (BossBar bossBar : bossBars.values()) {
+            bossBar.removeAll();
+        }
+        bossBars.clear();
+        renderedSequence = 0L;
+        renderCount = 0L;
+        rendering.set(false);
+    }
+
+    private void startRendering() {
+        if (renderTask != null) {
+            return;
+        }
+        long intervalTicks = Math.max(1, Config.getBackupProgressUpdateIntervalTicks());
+        renderTask = scheduler.runGlobalTimer(this::render, 1L, intervalTicks);
+    }
+
+    private void render() {
+        Progress progress = latest.get();
+        long staleMillis = Math.max(1, Config.getBackupFreezeTimeoutSeconds()) * 1000L;
+        if (progress == null || finished.get() || System.currentTimeMillis() - progress.receivedAtMillis() > staleMillis) {
+            stop();
+            return;
+        }
+
+        Map<String, List<Player>> playersByLocale = new HashMap<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            String locale = player.getLocale() == null ? "en_us" : player.getLocale().toLowerCase(Locale.ROOT);
+            playersByLocale.computeIfAbsent(locale, ignored -> new ArrayList<>()).add(player);
+        }
+
+        boolean changed = progress.sequence() != renderedSequence;
+        renderedSequence = progress.sequence();
+        renderCount++;
+        if ("actionbar".equals(Config.getBackupProgressDisplay())) {
+            // The action bar fades after a few seconds, so it is redrawn every interval even without news.
+            for (Map.Entry<String, List<Player>> group : playersByLocale.entrySet()) {
+                TextComponent text = new TextComponent(format(group.getKey(), progress));
+                for (Player player : group.getValue()) {
+                    scheduler.executeAtEntity(player, () -> player.spigot().sendMessage(ChatMessageType.ACTION_BAR, text));
+                }
+            }
+            return;
+        }
+        renderBossBars(progress, playersByLocale, changed);
+    }
+
+    private void renderBossBars(Progress progress, Map<String, List<Player>> playersByLocale, boolean changed) {
+        Iterator<Map.Entry<String, BossBar>> unused = bossBars.entrySet().iterator();
+        while (unused.hasNext()) {
+            Map.Entry<String, BossBar> entry = unused.next();
+            if (!playersByLocale.containsKey(entry.getKey())) {
+                entry.getValue().removeAll();
+                unused.remove();
+            }
+        }
+
+        for (Map.Entry<String, List<Player>> group : playersByLocale.entrySet()) {
+            BossBar bossBar = bossBars.get(group.getKey());
+            if (bossBar == null) {
+                bossBar = Bukkit.createBossBar(format(group.getKey(), progress), BarColor.GREEN, BarStyle.SOLID);
+                bossBar.setProgress(progress.fraction());
+                bossBars.put(group.getKey(), bossBar);
+            } else if (changed) {
+                bossBar.setTitle(format(group.getKey(), progress));
+                bossBar.setProgress(progress.fraction());
+            }
+
+            // Players can join, leave or switch language between renders.
+            Set<Player> shown = new HashSet<>(bossBar.getPlayers());
+            for (Player player : group.getValue()) {
+                if (!shown.remove(player)) {
+                    bossBar.addPlayer(player);
+                }
+            }
+            for (Player stale : shown) {
+                bossBar.removePlayer(stale);
+            }
+        }
+    }
+
+    private String format(String locale, Progress progress) {
+        String world = progress.world() != null ? progress.world() : "?";
+        String percent = String.valueOf((int) Math.floor(progress.fraction() * 100.0D));
+        String bytes = progress.bytesTotal() > 0L
+                ? formatBytes(progress.bytesDone()) + " / " + formatBytes(progress.bytesTotal())
+                : formatBytes(progress.bytesDone());
+        String files = progress.filesTotal() > 0L
+                ? progress.filesDone() + "/" + progress.filesTotal()
+                : String.valueOf(progress.filesDone());
+        String eta = progress.etaSeconds() >= 0L
+                ? String.format(Locale.ROOT, "%d:%02d", progress.etaSeconds() / 60L, progress.etaSeconds() % 60L)
+                : "?";
+        return languageManager.getTranslation(locale, "minebackup.progress.backup", world, percent, bytes, files, eta);
+    }
+
+    private static String formatBytes(long bytes) {
+        double value = Math.max(0L, bytes);
+        int unit = 0;
+        while (value >= 1024.0D && unit < BYTE_UNITS.length - 1) {
+            value /= 1024.0D;
+            unit++;
+        }
+        return unit == 0
+                ? (long) value + " " + BYTE_UNITS[unit]
+                : String.format(Locale.ROOT, "%.1f %s", value, BYTE_UNITS[unit]);
+    }
+
+    private record Progress(long sequence, long receivedAtMillis, String world, long bytesDone, long bytesTotal,
+                            long filesDone, long filesTotal, long etaSeconds, int percent) {
+        static Progress parse(long sequence, long receivedAtMillis, Map<String, String> eventData) {
+            return new Progress(
+                    sequence,
+                    receivedAtMillis,
+                    eventData.get("world"),
+                    parseLong(eventData.get("bytes_done"), 0L),
+                    parseLong(eventData.get("bytes_total"), 0L),
+                    parseLong(eventData.get("files_done"), 0L),
+                    parseLong(eventData.get("files_total"), 0L),
+                    parseLong(eventData.getOrDefault("eta_seconds", eventData.get("eta")), -1L),
+                    (int) parseLong(eventData.get("percent"), -1L)
+            );
+        }
+
+        double fraction() {
+            double fraction;
+            if (bytesTotal > 0L) {
+                fraction = (double) bytesDone / bytesTotal;
+            } else if (filesTotal > 0L) {
+                fraction = (double) filesDone / filesTotal;
+            } else {
+                fraction = Math.max(0, percent) / 100.0D;
+            }
+            return Math.max(0.0D, Math.min(1.0D, fraction));
+        }
+
+        private static long parseLong(String value, long fallback) {
+            if (value == null) {
+                return fallback;
+            }
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException ignored) {
+                return fallback;
+            }
+        }
+    }
+}
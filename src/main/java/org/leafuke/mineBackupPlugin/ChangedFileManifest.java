@@ -0,0 +1,313 @@
+package org.leafuke.mineBackupPlugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the list of world files (region, entities and poi {@code .mca} files plus playerdata) that changed since
+ * the last successful backup, so the backend can transfer only those.
+ * <p>
+ * Changes are recorded as they happen: chunk unloads and players logging out. When a backup
+ * starts, the regions still loaded and the playerdata of online players are added, since the pre-save is the only
+ * thing that can have written them since. No files are scanned on that path; a full mtime scan only runs once in
+ * the background when there is no manifest to start from. The list is persisted to {@value #FILE_NAME} in the
+ * plugin data folder, which is also the file handed to the backend.
+ * Paths are relative to the server's world container and always use {@code /}. With a {@link RegionHashIndex},
+ * files whose mtime moved but whose content matches the last successful backup are dropped before handover.
+ */
+public final class ChangedFileManifest implements Listener {
+    public static final String FILE_NAME = "changed-files.txt";
+    private static final String HEADER_SINCE = "# since=";
+    private static final String[] REGION_DIRECTORIES = {"region", "entities", "poi"};
+
+    private final MineBackupPlugin plugin;
+    private final Path manifestFile;
+    private final RegionHashIndex contentIndex;
+    /** path -> last time the plugin saw it change. */
+    private final Map<String, Long> changedFiles = new ConcurrentHashMap<>();
+    /** Regions already recorded since the current backup started, so repeated unloads cost a set lookup. */
+    private final Map<UUID, Set<Long>> markedRegions = new ConcurrentHashMap<>();
+
+    private volatile long sinceMillis;
+    private volatile long pendingCutoffMillis;
+
+    public ChangedFileManifest(MineBackupPlugin plugin, RegionHashIndex contentIndex) {
+        this.plugin = plugin;
+        this.manifestFile = plugin.getDataFolder().toPath().resolve(FILE_NAME);
+        this.contentIndex = contentIndex;
+    }
+
+    public Path getManifestFile() {
+        return manifestFile;
+    }
+
+    public int getChangedFileCount() {
+        return changedFiles.size();
+    }
+
+    public long getSinceMillis() {
+        return sinceMillis;
+    }
+
+    /**
+     * Loads the manifest left by the previous run. Without one, nothing is known about older changes, so the
+     * manifest starts out "since the beginning" and the first backup is effectively a full one.
+     */
+    public void load(List<Path> worldFolders) {
+        if (!Files.isRegularFile(manifestFile)) {
+            sinceMillis = 0L;
+            plugin.getPluginScheduler().runAsync(() -> {
+                for (Path worldFolder : worldFolders) {
+                    scan(worldFolder);
+                }
+                persist();
+            });
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(HEADER_SINCE)) {
+                    sinceMillis = parseLong(line.substring(HEADER_SINCE.length()), 0L);
+                    continue;
+                }
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                if (tab < 0) {
+                    changedFiles.put(line, sinceMillis);
+                } else {
+                    changedFiles.put(line.substring(0, tab), parseLong(line.substring(tab + 1), sinceMillis));
+                }
+            }
+            plugin.getBackupLogger().info("MANIFEST", "Loaded " + changedFiles.size()
+                    + " changed file(s) since " + sinceMillis + ".");
+        } catch (IOException e) {
+            plugin.getBackupLogger().warn("MANIFEST", "Failed to load " + FILE_NAME + ", starting over: " + e.getMessage());
+            changedFiles.clear();
+            sinceMillis = 0L;
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        // Every unload counts, not just those that save: a chunk written by an auto-save can unload clean later.
+        Chunk chunk = event.getChunk();
+        World world = event.getWorld();
+        int regionX = chunk.getX() >> 5;
+        int regionZ = chunk.getZ() >> 5;
+        Set<Long> marked = markedRegions.computeIfAbsent(world.getUID(), ignored -> ConcurrentHashMap.newKeySet());
+        if (marked.add(regionKey(regionX, regionZ))) {
+            putRegion(worldPrefix(world), regionX, regionZ, System.currentTimeMillis());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        putPlayerData(event.getPlayer(), System.currentTimeMillis());
+    }
+
+    /**
+     * Starts the manifest for the backup that is about to run. Call on the main thread right after its pre-save;
+     * it only walks the loaded chunks and online players, no files.
+     */
+    public void beginBackup(List<World> worlds) {
+        long now = System.currentTimeMillis();
+        pendingCutoffMillis = now;
+        for (World world : worlds) {
+            String prefix = worldPrefix(world);
+            Set<Long> regions = new HashSet<>();
+            for (Chunk chunk : world.getLoadedChunks()) {
+                int regionX = chunk.getX() >> 5;
+                int regionZ = chunk.getZ() >> 5;
+                if (regions.add(regionKey(regionX, regionZ))) {
+                    putRegion(prefix, regionX, regionZ, now);
+                }
+            }
+        }
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            putPlayerData(player, now);
+        }
+        // Anything written from now on belongs to the next backup and has to be recorded again.
+        markedRegions.clear();
+    }
+
+    /**
+     * Writes the manifest for the backup started by {@link #beginBackup}. Blocks on disk I/O; call off the main
+     * thread. Only the opt-in content index reads world files here.
+     */
+    public Path writeForBackup(List<Path> worldFolders) {
+        int unchanged = 0;
+        if (contentIndex != null) {
+            contentIndex.refresh(worldFolders);
+            int before = changedFiles.size();
+            changedFiles.keySet().removeIf(contentIndex::isUnchangedSinceCommit);
+            unchanged = before - changedFiles.size();
+        }
+        persist();
+        plugin.getBackupLogger().info("MANIFEST", "Prepared manifest with " + changedFiles.size()
+                + " changed file(s) since " + sinceMillis
+                + (unchanged > 0 ? " (" + unchanged + " with identical content dropped)" : "")
+                + " at " + manifestFile.toAbsolutePath());
+        return manifestFile;
+    }
+
+    /**
+     * The backup started by the last {@link #beginBackup} succeeded: everything that changed before it
+     * started is covered, later changes stay in the manifest.
+     */
+    public void commitBackup() {
+        long cutoff = pendingCutoffMillis;
+        if (cutoff <= 0L) {
+            return;
+        }
+        pendingCutoffMillis = 0L;
+        changedFiles.values().removeIf(changed -> changed <= cutoff);
+        sinceMillis = cutoff;
+        plugin.getPluginScheduler().runAsync(() -> {
+            if (contentIndex != null) {
+                contentIndex.commit();
+            }
+            persist();
+        });
+    }
+
+    public void save() {
+        persist();
+    }
+
+    private void scan(Path worldFolder) {
+        long since = sinceMillis;
+        int before = changedFiles.size();
+        try {
+            forEachTrackedFile(worldFolder, (key, file, attributes) -> {
+                long modified = attributes.lastModifiedTime().toMillis();
+                if (modified > since) {
+                    changedFiles.merge(key, modified, Math::max);
+                }
+            });
+        } catch (IOException e) {
+            plugin.getBackupLogger().warn("MANIFEST", "Failed to scan " + worldFolder + ": " + e.getMessage());
+        }
+        if (Config.isDebug()) {
+            plugin.getBackupLogger().debug("MANIFEST", "Scanned " + worldFolder + ": "
+                    + (changedFiles.size() - before) + " new changed file(s).");
+        }
+    }
+
+    /**
+     * Visits every file the manifest tracks in a world folder with its manifest key. Also used by
+     * {@link RegionHashIndex} so both agree on which files exist and how they are named.
+     */
+    static void forEachTrackedFile(Path worldFolder, TrackedFileVisitor visitor) throws IOException {
+        String worldPrefix = worldFolder.getFileName().toString() + "/";
+        for (String dimension : new String[]{"", "DIM-1/", "DIM1/"}) {
+            for (String directory : REGION_DIRECTORIES) {
+                visitDirectory(worldFolder.resolve(dimension + directory), worldPrefix + dimension + directory + "/",
+                        ".mca", visitor);
+            }
+        }
+        visitDirectory(worldFolder.resolve("playerdata"), worldPrefix + "playerdata/", ".dat", visitor);
+    }
+
+    private static void visitDirectory(Path directory, String keyPrefix, String suffix, TrackedFileVisitor visitor)
+            throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + suffix)) {
+            for (Path file : files) {
+                visitor.visit(keyPrefix + file.getFileName(), file,
+                        Files.readAttributes(file, BasicFileAttributes.class));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface TrackedFileVisitor {
+        void visit(String key, Path file, BasicFileAttributes attributes) throws IOException;
+    }
+
+    private synchronized void persist() {
+        Map<String, Long> sorted = new TreeMap<>(changedFiles);
+        Path temp = manifestFile.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            Files.createDirectories(manifestFile.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(HEADER_SINCE + sinceMillis);
+                writer.newLine();
+                for (Map.Entry<String, Long> entry : sorted.entrySet()) {
+                    writer.write(entry.getKey() + "\t" + entry.getValue());
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getBackupLogger().warn("MANIFEST", "Failed to write " + FILE_NAME + ": " + e.getMessage());
+        }
+    }
+
+    private void putRegion(String worldPrefix, int regionX, int regionZ, long changedAtMillis) {
+        String regionName = "r." + regionX + "." + regionZ + ".mca";
+        for (String directory : REGION_DIRECTORIES) {
+            changedFiles.put(worldPrefix + directory + "/" + regionName, changedAtMillis);
+        }
+    }
+
+    private void putPlayerData(Player player, long changedAtMillis) {
+        List<World> worlds = Bukkit.getWorlds();
+        if (!worlds.isEmpty()) {
+            changedFiles.put(worlds.get(0).getWorldFolder().getName() + "/playerdata/" + player.getUniqueId() + ".dat",
+                    changedAtMillis);
+        }
+    }
+
+    private static long regionKey(int regionX, int regionZ) {
+        return ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+    }
+
+    private static String worldPrefix(World world) {
+        return world.getWorldFolder().getName() + "/" + dimensionPrefix(world);
+    }
+
+    private static String dimensionPrefix(World world) {
+        return switch (world.getEnvironment()) {
+            case NETHER -> "DIM-1/";
+            case THE_END -> "DIM1/";
+            default -> "";
+        };
+    }
+
+    private static long parseLong(String value, long fallback) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package org.leafuke.mineBackupPlugin;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFormEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockGrowEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.block.BlockSpreadEvent;
+import org.bukkit.event.block.LeavesDecayEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only journal of which chunks were modified and when, so a restore can later be scoped to
+ * "chunks changed since backup X".
+ * <p>
+ * Event handlers only write three primitives into a preallocated ring; a background thread drains the ring
+ * and appends big-endian records to {@value #FILE_NAME}:
+ * <pre>
+ *   header:  int magic 'MBCJ', short version
+ *   0x01 world   short id, short length, UTF-8 name      (declared once per file before first use)
+ *   0x02 chunk   short world id, int chunkX, int chunkZ, long epochMillis
+ *   0x03 backup  long epochMillis, short length, UTF-8 backup file  (everything before the time is covered)
+ *   0x04 gap     long epochMillis, int droppedRecords    (ring overflowed, journal incomplete)
+ * </pre>
+ * A world declaration applies to all records after it; ids are reassigned on every server start. Consecutive
+ * changes to the same chunk within one second are recorded once. Past the configured size the
+ * file is rotated to {@code chunk-journal.1.bin}.
+ */
+public final class ChunkChangeJournal implements Listener {
+    public static final String FILE_NAME = "chunk-journal.bin";
+    private static final String ROTATED_FILE_NAME = "chunk-journal.1.bin";
+    private static final int MAGIC = 0x4D42434A;
+    private static final short VERSION = 1;
+    private static final byte RECORD_WORLD = 0x01;
+    private static final byte RECORD_CHUNK = 0x02;
+    private static final byte RECORD_BACKUP = 0x03;
+    private static final byte RECORD_GAP = 0x04;
+    private static final int CHUNK_RECORD_BYTES = 1 + 2 + 4 + 4 + 8;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250L);
+    private static final int MAX_WORLDS = 4096;
+
+    private final BackupLogger logger;
+    private final Path journalFile;
+    private final long maxFileBytes;
+
+    // Ring buffer, guarded by "this". Producers never allocate.
+    private final int mask;
+    private final long[] ringChunkKeys;
+    private final short[] ringWorldIds;
+    private final long[] ringTimes;
+    private long head;
+    private long tail;
+    private long droppedRecords;
+    private long lastChunkKey = Long.MIN_VALUE;
+    private int lastWorldId = -1;
+    private long lastSecond = -1L;
+
+    private final Map<UUID, Integer> worldIds = new ConcurrentHashMap<>();
+    private final String[] worldNames = new String[MAX_WORLDS];
+
+    // Writer-owned state.
+    private final long[] drainChunkKeys;
+    private final short[] drainWorldIds;
+    private final long[] drainTimes;
+    private final boolean[] declaredWorlds = new boolean[MAX_WORLDS];
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(64 * 1024);
+    private FileChannel channel;
+    private volatile String pendingBackupFile;
+    private volatile long pendingBackupMillis;
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public ChunkChangeJournal(BackupLogger logger, Path dataFolder, int capacity, long maxFileBytes) {
+        this.logger = logger;
+        this.journalFile = dataFolder.resolve(FILE_NAME);
+        this.maxFileBytes = maxFileBytes;
+        int size = Integer.highestOneBit(Math.max(1024, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.ringChunkKeys = new long[size];
+        this.ringWorldIds = new short[size];
+        this.ringTimes = new long[size];
+        this.drainChunkKeys = new long[size];
+        this.drainWorldIds = new short[size];
+        this.drainTimes = new long[size];
+    }
+
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::runWriter, "MineBackup-ChunkJournal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /** Stops the writer after a final drain. */
+    public void stop() {
+        running = false;
+        Thread thread = writerThread;
+        writerThread = null;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(2000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Marks that a backup covering every change before {@code cutoffMillis} succeeded.
+     */
+    public void markBackup(long cutoffMillis, String backupFile) {
+        pendingBackupFile = backupFile != null ? backupFile : "";
+        pendingBackupMillis = cutoffMillis;
+        Thread thread = writerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        record(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        record(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+        record(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent event) {
+        record(event.getToBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockGrow(BlockGrowEvent event) {
+        record(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockForm(BlockFormEvent event) {
+        record(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockSpread(BlockSpreadEvent event) {
+        record(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFade(BlockFadeEvent event) {
+        record(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onLeavesDecay(LeavesDecayEvent event) {
+        record(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(EntityChangeBlockEvent event) {
+        record(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        record(event.getBlock());
+        recordAll(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        recordAll(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+        record(event.getBlock());
+        recordAll(event.getBlocks());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+        record(event.getBlock());
+        recordAll(event.getBlocks());
+    }
+
+    private void recordAll(List<Block> blocks) {
+        // Indexed loop: no iterator allocation.
+        for (int i = 0, size = blocks.size(); i < size; i++) {
+            record(blocks.get(i));
+        }
+    }
+
+    private void record(Block block) {
+        Integer id = worldIds.get(block.getWorld().getUID());
+        int worldId = id != null ? id : registerWorld(block.getWorld());
+        if (worldId < 0) {
+            return;
+        }
+        long chunkKey = ((long) (block.getZ() >> 4) << 32) | ((block.getX() >> 4) & 0xFFFFFFFFL);
+        long now = System.currentTimeMillis();
+        long second = now / 1000L;
+        synchronized (this) {
+            if (chunkKey == lastChunkKey && worldId == lastWorldId && second == lastSecond) {
+                return;
+            }
+            lastChunkKey = chunkKey;
+            lastWorldId = worldId;
+            lastSecond = second;
+            if (head - tail > mask) {
+                droppedRecords++;
+                return;
+            }
+            int slot = (int) (head & mask);
+            ringChunkKeys[slot] = chunkKey;
+            ringWorldIds[slot] = (short) worldId;
+            ringTimes[slot] = now;
+            head++;
+        }
+    }
+
+    private synchronized int registerWorld(World world) {
+        Integer existing = worldIds.get(world.getUID());
+        if (existing != null) {
+            return existing;
+        }
+        int id = worldIds.size();
+        if (id >= MAX_WORLDS) {
+            return -1;
+        }
+        worldNames[id] = world.getName();
+        worldIds.put(world.getUID(), id);
+        return id;
+    }
+
+    private void runWriter() {
+        try {
+            openJournal();
+            while (running) {
+                LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+                drainOnce();
+            }
+            drainOnce();
+        } catch (IOException e) {
+            logger.error("JOURNAL", "Chunk journal writer stopped: " + e.getMessage());
+        } finally {
+            closeJournal();
+        }
+    }
+
+    private void drainOnce() throws IOException {
+        int count;
+        long dropped;
+        synchronized (this) {
+            count = (int) (head - tail);
+            for (int i = 0; i < count; i++) {
+                int slot = (int) ((tail + i) & mask);
+                drainChunkKeys[i] = ringChunkKeys[slot];
+                drainWorldIds[i] = ringWorldIds[slot];
+                drainTimes[i] = ringTimes[slot];
+            }
+            tail = head;
+            dropped = droppedRecords;
+            droppedRecords = 0L;
+        }
+
+        if (dropped > 0L) {
+            ensureSpace(1 + 8 + 4);
+            writeBuffer.put(RECORD_GAP).putLong(System.currentTimeMillis()).putInt((int) Math.min(Integer.MAX_VALUE, dropped));
+            logger.warn("JOURNAL", "Chunk journal ring overflowed, dropped " + dropped + " record(s).");
+        }
+        for (int i = 0; i < count; i++) {
+            int worldId = drainWorldIds[i];
+            if (!declaredWorlds[worldId]) {
+                byte[] name = worldNames[worldId].getBytes(StandardCharsets.UTF_8);
+                ensureSpace(1 + 2 + 2 + name.length);
+                writeBuffer.put(RECORD_WORLD).putShort((short) worldId).putShort((short) name.length).put(name);
+                declaredWorlds[worldId] = true;
+            }
+            ensureSpace(CHUNK_RECORD_BYTES);
+            long chunkKey = drainChunkKeys[i];
+            writeBuffer.put(RECORD_CHUNK).putShort((short) worldId)
+                    .putInt((int) chunkKey).putInt((int) (chunkKey >>> 32)).putLong(drainTimes[i]);
+        }
+
+        long backupMillis = pendingBackupMillis;
+        if (backupMillis > 0L) {
+            pendingBackupMillis = 0L;
+            byte[] file = pendingBackupFile.getBytes(StandardCharsets.UTF_8);
+            int length = Math.min(file.length, Short.MAX_VALUE);
+            ensureSpace(1 + 8 + 2 + length);
+            writeBuffer.put(RECORD_BACKUP).putLong(backupMillis).putShort((short) length).put(file, 0, length);
+        }
+        flushBuffer();
+
+        if (maxFileBytes > 0L && channel.size() > maxFileBytes) {
+            rotate();
+        }
+    }
+
+    private void ensureSpace(int bytes) throws IOException {
+        if (writeBuffer.remaining() < bytes) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer);
+        }
+        writeBuffer.clear();
+    }
+
+    private void openJournal() throws IOException {
+        Files.createDirectories(journalFile.getParent());
+        channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (channel.size() == 0L) {
+            writeBuffer.putInt(MAGIC).putShort(VERSION);
+            flushBuffer();
+        } else {
+            // Appending to an earlier run: world ids restart, so declare them again.
+            Arrays.fill(declaredWorlds, false);
+        }
+    }
+
+    private void rotate() throws IOException {
+        closeJournal();
+        Files.move(journalFile, journalFile.resolveSibling(ROTATED_FILE_NAME), StandardCopyOption.REPLACE_EXISTING);
+        Arrays.fill(declaredWorlds, false);
+        openJournal();
+        logger.info("JOURNAL", "Rotated chunk journal to " + ROTATED_FILE_NAME + ".");
+    }
+
+    private void closeJournal() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+}
@@ -13,7 +13,9 @@ public final class CommandHelpRegistry {
             entry("help", "[subcommand]", "minebackup.help.help.summary", "/mb help quickbackup"),
             entry("save", "", "minebackup.help.save.summary", "/mb save"),
             entry("status", "", "minebackup.help.status.summary", "/mb status"),
+            entry("diag", "", "minebackup.help.diag.summary", "/mb diag"),
             entry("reload", "", "minebackup.help.reload.summary", "/mb reload"),
+            entry("reload_world", "", "minebackup.help.reload_world.summary", "/mb reload_world"),
             entry("list_configs", "", "minebackup.help.list_configs.summary", "/mb list_configs"),
             entry("list_worlds", "<config_id>", "minebackup.help.list_worlds.summary", "/mb list_worlds 1"),
             entry("list_backups", "<config_id> <world_index>", "minebackup.help.list_backups.summary", "/mb list_backups 1 0"),
@@ -2,6 +2,8 @@ package org.leafuke.mineBackupPlugin;
 
 import org.bukkit.configuration.file.FileConfiguration;
 
+import java.util.Locale;
+
 public final class Config {
     private static FileConfiguration config;
 
@@ -32,6 +34,86 @@ public final class Config {
         return config.getInt("backup.freeze-timeout-seconds", 60);
     }
 
+    public static String getBackupProgressDisplay() {
+        return config.getString("backup.progress.display", "bossbar").toLowerCase(Locale.ROOT);
+    }
+
+    public static int getBackupProgressUpdateIntervalTicks() {
+        return config.getInt("backup.progress.update-interval-ticks", 10);
+    }
+
+    public static String getPlayerFlushMode() {
+        return config.getString("save.player-flush-mode", "per-player");
+    }
+
+    public static int getDirtyOnlyMaxSkipSeconds() {
+        return config.getInt("save.dirty-only-max-skip-seconds", 300);
+    }
+
+    public static boolean isAsyncWorldSaveEnabled() {
+        return config.getBoolean("save.async-world-save", true);
+    }
+
+    public static boolean isSnapshotStagingEnabled() {
+        return config.getBoolean("backup.snapshot.enabled", false);
+    }
+
+    public static String getSnapshotDirectory() {
+        return config.getString("backup.snapshot.directory", "staging");
+    }
+
+    public static boolean isChangeManifestEnabled() {
+        return config.getBoolean("backup.change-manifest.enabled", false);
+    }
+
+    public static boolean isContentHashEnabled() {
+        return config.getBoolean("backup.change-manifest.content-hash.enabled", false);
+    }
+
+    public static int getContentHashThreads() {
+        return config.getInt("backup.change-manifest.content-hash.threads", 2);
+    }
+
+    public static int getContentHashIoBudgetMbPerSecond() {
+        return config.getInt("backup.change-manifest.content-hash.io-budget-mb-per-second", 64);
+    }
+
+    public static boolean isChunkJournalEnabled() {
+        return config.getBoolean("backup.chunk-journal.enabled", false);
+    }
+
+    public static int getChunkJournalCapacity() {
+        return config.getInt("backup.chunk-journal.buffer-records", 65536);
+    }
+
+    public static int getChunkJournalMaxSizeMb() {
+        return config.getInt("backup.chunk-journal.max-size-mb", 64);
+    }
+
+    public static int getSnapshotCopyThreads() {
+        return config.getInt("backup.snapshot.copy-threads", Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    public static int getSnapshotMaxConcurrentCopies() {
+        return config.getInt("backup.snapshot.max-concurrent-copies", 4);
+    }
+
+    public static boolean isTpsAwareEnabled() {
+        return config.getBoolean("backup.tps-aware.enabled", true);
+    }
+
+    public static double getLagMsptThreshold() {
+        return config.getDouble("backup.tps-aware.lag-mspt-threshold", 55.0D);
+    }
+
+    public static int getMaxBackupDeferralSeconds() {
+        return config.getInt("backup.tps-aware.max-deferral-seconds", 30);
+    }
+
+    public static boolean isRequestBackendDelay() {
+        return config.getBoolean("backup.tps-aware.request-backend-delay", false);
+    }
+
     public static boolean isRequireConfirm() {
         return config.getBoolean("restore.require-confirm", true);
     }
@@ -44,6 +126,18 @@ public final class Config {
         return config.getInt("restore.countdown-seconds", 10);
     }
 
+    public static boolean isRestorePreStageEnabled() {
+        return config.getBoolean("restore.pre-stage", false);
+    }
+
+    public static boolean isWorldScopedRestoreEnabled() {
+        return config.getBoolean("restore.world-scoped.enabled", false);
+    }
+
+    public static int getWorldScopedRestoreTimeoutSeconds() {
+        return config.getInt("restore.world-scoped.reload-timeout-seconds", 120);
+    }
+
     public static boolean isRemoteRestoreCountdown() {
         return config.getBoolean("restore.remote-restore-countdown", true);
     }
@@ -72,6 +166,22 @@ public final class Config {
         return config.getInt("restart.sidecar.relay-timeout-seconds", 20);
     }
 
+    public static String getSidecarRelayFsyncPolicy() {
+        return config.getString("restart.sidecar.relay-fsync", "always");
+    }
+
+    public static boolean isSidecarWorldLockWaitEnabled() {
+        return config.getBoolean("restart.sidecar.wait-for-world-lock", false);
+    }
+
+    public static boolean isSidecarFastLaunchEnabled() {
+        return config.getBoolean("restart.sidecar.fast-launch", true);
+    }
+
+    public static boolean isWarmSidecarEnabled() {
+        return config.getBoolean("restart.sidecar.warm", false);
+    }
+
     public static boolean isFileLoggingEnabled() {
         return config.getBoolean("logging.enabled", true);
     }
@@ -103,6 +213,18 @@ public final class Config {
         return config.getInt("auto-backup.interval-seconds", -1);
     }
 
+    public static boolean isPreFlushEnabled() {
+        return config.getBoolean("auto-backup.pre-flush.enabled", false);
+    }
+
+    public static int getPreFlushLeadSeconds() {
+        return config.getInt("auto-backup.pre-flush.lead-seconds", 30);
+    }
+
+    public static int getPreFlushMaxMillisPerTick() {
+        return config.getInt("auto-backup.pre-flush.max-millis-per-tick", 5);
+    }
+
     public static void setAutoBackup(MineBackupPlugin plugin, String configId, int worldIndex, int intervalSeconds) {
         config.set("auto-backup.config-id", configId);
         config.set("auto-backup.world-index", worldIndex);
@@ -0,0 +1,66 @@
+package org.leafuke.mineBackupPlugin;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Recognises a broadcast that already reached us through another path. After a restart the same event can
+ * arrive live from our own subscriber and again from the sidecar relay; both copies carry the time the
+ * broadcast was received, so copies of one broadcast are close together while a genuine repeat of the same
+ * event (another handshake later on) is not.
+ *
+ * <p>An event is identified by its backend-supplied {@code event_id} when present, otherwise by a hash of its
+ * key/value pairs in key order. The most recent identities are kept in a bounded LRU.
+ */
+final class EventDeduplicator {
+    private static final long HASH_SEED = 0x4D42455645L;
+
+    private final long windowMillis;
+    private final Map<String, Long> recent;
+
+    EventDeduplicator(int capacity, long windowMillis) {
+        this.windowMillis = windowMillis;
+        this.recent = new LinkedHashMap<>(capacity * 2, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Records the event and returns {@code true} unless a copy received within the window was already recorded.
+     *
+     * @param receivedAtMillis when the broadcast was received, by us or by the sidecar
+     */
+    synchronized boolean markFirstSeen(String payload, long receivedAtMillis) {
+        String identity = identify(payload);
+        Long previous = recent.get(identity);
+        if (previous != null && Math.abs(previous - receivedAtMillis) <= windowMillis) {
+            return false;
+        }
+        recent.put(identity, receivedAtMillis);
+        return true;
+    }
+
+    static String identify(String payload) {
+        Map<String, String> fields = new TreeMap<>();
+        for (String pair : payload.split(";")) {
+            String[] keyValue = pair.split("=", 2);
+            if (keyValue.length == 2) {
+                fields.put(keyValue[0].trim(), keyValue[1].trim());
+            }
+        }
+        String eventId = fields.get("event_id");
+        if (eventId != null && !eventId.isEmpty()) {
+            return "id:" + eventId;
+        }
+
+        String canonical = fields.isEmpty() ? payload.trim() : fields.toString();
+        byte[] bytes = canonical.getBytes(StandardCharsets.UTF_8);
+        return "h:" + Long.toHexString(XxHash64.hash(ByteBuffer.wrap(bytes), 0, bytes.length, HASH_SEED));
+    }
+}
@@ -0,0 +1,155 @@
+package org.leafuke.mineBackupPlugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.leafuke.mineBackupPlugin.scheduler.PluginScheduler;
+import org.leafuke.mineBackupPlugin.scheduler.TaskHandle;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps world auto-save frozen while the backend archives a hot backup. Freezing arms a single deadline task
+ * instead of polling: the backend's {@code backup_progress} events only push the deadline back, and the task
+ * re-arms itself for the remainder when it fires early. {@code backup_success}/{@code backup_failed} release the
+ * freeze and cancel the task. Each freeze's actual duration is logged and folded into {@link #describe()}.
+ */
+public final class HotBackupSession {
+    private final MineBackupPlugin plugin;
+    private final BackupLogger logger;
+    private final PluginScheduler scheduler;
+    private final Map<String, Boolean> worldAutoSaveStates = new ConcurrentHashMap<>();
+
+    private volatile long frozenAtMillis;
+    private volatile long deadlineMillis;
+    private TaskHandle deadlineTask;
+
+    private int freezeCount;
+    private int timeoutCount;
+    private long lastFreezeMillis;
+    private long maxFreezeMillis;
+    private long totalFreezeMillis;
+
+    public HotBackupSession(MineBackupPlugin plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getBackupLogger();
+        this.scheduler = plugin.getPluginScheduler();
+    }
+
+    public boolean isFrozen() {
+        return !worldAutoSaveStates.isEmpty();
+    }
+
+    /** Disables auto-save on every loaded world until the backup finishes or the freeze times out. */
+    public void freeze() {
+        scheduler.executeGlobal(() -> {
+            if (isFrozen()) {
+                extend();
+                logger.warn("BACKUP", "Auto-save was already frozen. Extended the freeze deadline.");
+                return;
+            }
+
+            for (World world : Bukkit.getWorlds()) {
+                String worldName = world.getName();
+                worldAutoSaveStates.putIfAbsent(worldName, world.isAutoSave());
+                if (world.isAutoSave()) {
+                    world.setAutoSave(false);
+                    logger.info("BACKUP", "Disabled auto-save for world '" + worldName + "' during hot backup.");
+                }
+            }
+            frozenAtMillis = System.currentTimeMillis();
+            deadlineMillis = frozenAtMillis + getTimeoutMillis();
+            scheduleDeadline(getTimeoutMillis());
+        });
+    }
+
+    /**
+     * Pushes the deadline a full timeout into the future. Safe from any thread and cheap enough to call for
+     * every progress event; it only moves a timestamp.
+     */
+    public void extend() {
+        if (frozenAtMillis > 0L) {
+            deadlineMillis = System.currentTimeMillis() + getTimeoutMillis();
+        }
+    }
+
+    /** Restores the auto-save state each world had before the freeze. */
+    public void release(String reason) {
+        Runnable action = () -> {
+            cancelDeadline();
+            for (World world : Bukkit.getWorlds()) {
+                Boolean previousState = worldAutoSaveStates.remove(world.getName());
+                if (previousState != null) {
+                    world.setAutoSave(previousState);
+                    logger.info("BACKUP", "Restored auto-save for world '" + world.getName()
+                            + "' to " + previousState + ".");
+                }
+            }
+            worldAutoSaveStates.clear();
+
+            long frozenAt = frozenAtMillis;
+            frozenAtMillis = 0L;
+            deadlineMillis = 0L;
+            if (frozenAt > 0L) {
+                recordFreeze(System.currentTimeMillis() - frozenAt, reason);
+            }
+        };
+        if (scheduler.isGlobalThread()) {
+            action.run();
+        } else if (plugin.isEnabled()) {
+            scheduler.runGlobal(action);
+        }
+    }
+
+    public synchronized String describe() {
+        if (freezeCount == 0) {
+            return "no freezes yet";
+        }
+        return freezeCount + " freezes, last " + lastFreezeMillis + "ms, max " + maxFreezeMillis
+                + "ms, avg " + (totalFreezeMillis / freezeCount) + "ms, " + timeoutCount + " timed out";
+    }
+
+    private void onDeadline() {
+        deadlineTask = null;
+        if (!isFrozen()) {
+            return;
+        }
+
+        long remainingMillis = deadlineMillis - System.currentTimeMillis();
+        if (remainingMillis > 0L) {
+            scheduleDeadline(remainingMillis);
+            return;
+        }
+
+        synchronized (this) {
+            timeoutCount++;
+        }
+        logger.warn("BACKUP", "Auto-save freeze timed out after " + (System.currentTimeMillis() - frozenAtMillis)
+                + "ms. Restoring auto-save states now.");
+        release("freeze timeout");
+    }
+
+    private void scheduleDeadline(long delayMillis) {
+        cancelDeadline();
+        deadlineTask = scheduler.runGlobalLater(this::onDeadline, Math.max(1L, (delayMillis + 49L) / 50L));
+    }
+
+    private void cancelDeadline() {
+        if (deadlineTask != null) {
+            deadlineTask.cancel();
+            deadlineTask = null;
+        }
+    }
+
+    private synchronized void recordFreeze(long frozenMillis, String reason) {
+        freezeCount++;
+        lastFreezeMillis = frozenMillis;
+        maxFreezeMillis = Math.max(maxFreezeMillis, frozenMillis);
+        totalFreezeMillis += frozenMillis;
+        logger.info("BACKUP", "Auto-save unfrozen after " + frozenMillis + "ms (" + reason + ").");
+    }
+
+    private static long getTimeoutMillis() {
+        return Math.max(1, Config.getBackupFreezeTimeoutSeconds()) * 1000L;
+    }
+}
@@ -1,38 +1,230 @@
 package org.leafuke.mineBackupPlugin;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * The restore and restart-relay state of the plugin, shared by the main thread, the KnotLink reader thread and the
+ * relay poller. The whole state is one immutable {@link State} swapped by compare-and-set, so a reader always sees
+ * a consistent phase/relay pair and two racing events cannot both win the same transition.
+ *
+ * <p>Phase and relay changes must be allowed by the transition tables below; rejected attempts return
+ * {@code false} and, like accepted ones, are kept in a small history ring shown by {@code /mb diag}. Every phase
+ * may return to {@link Phase#IDLE}, so whatever order events arrive in, a restore can always be reset.
+ */
 public final class HotRestoreState {
+    private static final int HISTORY_SIZE = 32;
+
+    private static final Map<Phase, EnumSet<Phase>> PHASE_TRANSITIONS = new EnumMap<>(Map.of(
+            Phase.IDLE, EnumSet.of(Phase.WAITING_CONFIRM, Phase.COUNTDOWN, Phase.EXECUTING),
+            Phase.WAITING_CONFIRM, EnumSet.of(Phase.COUNTDOWN, Phase.IDLE),
+            Phase.COUNTDOWN, EnumSet.of(Phase.EXECUTING, Phase.IDLE),
+            Phase.EXECUTING, EnumSet.of(Phase.RESTARTING, Phase.IDLE),
+            Phase.RESTARTING, EnumSet.of(Phase.IDLE)
+    ));
+    private static final Map<Relay, EnumSet<Relay>> RELAY_TRANSITIONS = new EnumMap<>(Map.of(
+            Relay.NONE, EnumSet.of(Relay.STARTING, Relay.ACTIVE),
+            Relay.STARTING, EnumSet.of(Relay.ACTIVE, Relay.NONE),
+            Relay.ACTIVE, EnumSet.of(Relay.NONE)
+    ));
+
+    private static final AtomicReference<State> STATE = new AtomicReference<>(State.initial());
+    private static final AtomicReference<Handshake> HANDSHAKE = new AtomicReference<>(null);
+    private static final AtomicReferenceArray<Transition> HISTORY = new AtomicReferenceArray<>(HISTORY_SIZE);
+    private static final AtomicLong HISTORY_COUNT = new AtomicLong();
+
     private HotRestoreState() {
     }
 
-    public static volatile boolean isRestoring = false;
-    public static volatile boolean waitingForServerStopAck = false;
+    public enum Phase {
+        IDLE("Idle"),
+        WAITING_CONFIRM("Waiting Confirm"),
+        COUNTDOWN("Countdown"),
+        EXECUTING("Executing"),
+        RESTARTING("Restarting");
+
+        private final String displayName;
+
+        Phase(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    public enum Relay {
+        NONE,
+        STARTING,
+        ACTIVE
+    }
+
+    public record State(Phase phase, Relay relay, long relayDeadlineMillis, long lastRelaySequence,
+                        long version, long changedAtMillis) {
+        static State initial() {
+            return new State(Phase.IDLE, Relay.NONE, 0L, 0L, 0L, System.currentTimeMillis());
+        }
 
-    public static volatile boolean handshakeCompleted = false;
-    public static volatile String mainProgramVersion = null;
-    public static volatile boolean versionCompatible = true;
-    public static volatile String requiredMinModVersion = null;
+        /** The world is being (or about to be) replaced, so nothing may save it. */
+        public boolean isRestoring() {
+            return phase == Phase.EXECUTING || phase == Phase.RESTARTING;
+        }
+    }
 
-    public static volatile boolean relaySessionActive = false;
-    public static volatile boolean sidecarReady = false;
-    public static volatile long relaySessionDeadlineMillis = 0L;
-    public static volatile long lastRelaySequence = 0L;
+    public record Transition(long atMillis, String from, String to, String cause, String thread, boolean accepted) {
+    }
+
+    public record Handshake(String mainProgramVersion, boolean versionCompatible, String requiredMinModVersion) {
+    }
+
+    public static State current() {
+        return STATE.get();
+    }
+
+    public static Phase phase() {
+        return STATE.get().phase();
+    }
+
+    public static boolean isRestoring() {
+        return STATE.get().isRestoring();
+    }
+
+    /** Moves to {@code target} from whatever phase is current, if the transition table allows it. */
+    public static boolean transition(Phase target, String cause) {
+        return transitionPhase(null, target, cause);
+    }
 
-    public static void reset() {
-        isRestoring = false;
-        waitingForServerStopAck = false;
+    /** Moves from {@code expected} to {@code target}; fails if another thread changed the phase first. */
+    public static boolean transition(Phase expected, Phase target, String cause) {
+        return transitionPhase(expected, target, cause);
+    }
+
+    /** Returns to {@link Phase#IDLE}; always allowed. */
+    public static void reset(String cause) {
+        transitionPhase(null, Phase.IDLE, cause);
+    }
+
+    /** Opens a relay session, starting the relayed sequence over. */
+    public static boolean startRelay(boolean sidecarReady, long deadlineMillis, String cause) {
+        Relay target = sidecarReady ? Relay.ACTIVE : Relay.STARTING;
+        return update("relay", cause, state -> state.relay() == Relay.NONE
+                ? new State(state.phase(), target, deadlineMillis, 0L, state.version() + 1, System.currentTimeMillis())
+                : null, state -> state.relay().name(), target.name());
+    }
+
+    /** Records that the sidecar reported ready; returns {@code false} if the relay was not starting. */
+    public static boolean markSidecarReady(String cause) {
+        return transitionRelay(Relay.STARTING, Relay.ACTIVE, cause);
+    }
+
+    /** Ends the relay session; returns {@code false} if none was open, so only one caller closes it. */
+    public static boolean endRelay(String cause) {
+        return transitionRelay(null, Relay.NONE, cause);
+    }
+
+    /**
+     * Claims relayed event {@code sequence}; returns {@code false} if it or a later one was already delivered.
+     * Not recorded in the history, which would otherwise fill with events.
+     */
+    public static boolean advanceRelaySequence(long sequence) {
+        while (true) {
+            State state = STATE.get();
+            if (state.relay() == Relay.NONE || sequence <= state.lastRelaySequence()) {
+                return false;
+            }
+            State next = new State(state.phase(), state.relay(), state.relayDeadlineMillis(), sequence,
+                    state.version(), state.changedAtMillis());
+            if (STATE.compareAndSet(state, next)) {
+                return true;
+            }
+        }
+    }
+
+    public static Handshake handshake() {
+        return HANDSHAKE.get();
+    }
+
+    public static void completeHandshake(String mainProgramVersion, boolean versionCompatible,
+                                         String requiredMinModVersion) {
+        HANDSHAKE.set(new Handshake(mainProgramVersion, versionCompatible, requiredMinModVersion));
     }
 
     public static void resetHandshake() {
-        handshakeCompleted = false;
-        mainProgramVersion = null;
-        versionCompatible = true;
-        requiredMinModVersion = null;
+        HANDSHAKE.set(null);
+    }
+
+    /** The most recent transitions, oldest first. */
+    public static List<Transition> history() {
+        long count = HISTORY_COUNT.get();
+        List<Transition> transitions = new ArrayList<>();
+        for (long index = Math.max(0L, count - HISTORY_SIZE); index < count; index++) {
+            Transition transition = HISTORY.get((int) (index % HISTORY_SIZE));
+            if (transition != null) {
+                transitions.add(transition);
+            }
+        }
+        return transitions;
+    }
+
+    private static boolean transitionPhase(Phase expected, Phase target, String cause) {
+        return update("phase", cause, state -> {
+            if ((expected != null && state.phase() != expected)
+                    || !PHASE_TRANSITIONS.get(state.phase()).contains(target)) {
+                return null;
+            }
+            return new State(target, state.relay(), state.relayDeadlineMillis(), state.lastRelaySequence(),
+                    state.version() + 1, System.currentTimeMillis());
+        }, state -> state.phase().name(), target.name());
+    }
+
+    private static boolean transitionRelay(Relay expected, Relay target, String cause) {
+        return update("relay", cause, state -> {
+            if ((expected != null && state.relay() != expected)
+                    || !RELAY_TRANSITIONS.get(state.relay()).contains(target)) {
+                return null;
+            }
+            boolean ended = target == Relay.NONE;
+            return new State(state.phase(), target, ended ? 0L : state.relayDeadlineMillis(),
+                    ended ? 0L : state.lastRelaySequence(), state.version() + 1, System.currentTimeMillis());
+        }, state -> state.relay().name(), target.name());
+    }
+
+    /**
+     * Applies {@code step} by compare-and-set until it succeeds or {@code step} returns {@code null} to reject.
+     * Rejected attempts to re-enter the current value are not recorded; they are the expected loser of a race.
+     */
+    private static boolean update(String kind, String cause, UnaryOperator<State> step,
+                                  Function<State, String> describe, String target) {
+        while (true) {
+            State state = STATE.get();
+            State next = step.apply(state);
+            String from = kind + ":" + describe.apply(state);
+            if (next == null) {
+                if (!describe.apply(state).equals(target)) {
+                    record(new Transition(System.currentTimeMillis(), from, target, cause,
+                            Thread.currentThread().getName(), false));
+                }
+                return false;
+            }
+            if (STATE.compareAndSet(state, next)) {
+                record(new Transition(next.changedAtMillis(), from, target, cause,
+                        Thread.currentThread().getName(), true));
+                return true;
+            }
+        }
     }
 
-    public static void resetRelay() {
-        relaySessionActive = false;
-        sidecarReady = false;
-        relaySessionDeadlineMillis = 0L;
-        lastRelaySequence = 0L;
+    private static void record(Transition transition) {
+        long index = HISTORY_COUNT.getAndIncrement();
+        HISTORY.set((int) (index % HISTORY_SIZE), transition);
     }
 }
@@ -4,113 +4,235 @@ import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public final class LocalSaveCoordinator {
     private LocalSaveCoordinator() {
     }
 
     public static SaveResult save(MineBackupPlugin plugin, String category, String operationLabel) {
-        BackupLogger logger = plugin.getBackupLogger();
-        ensurePrimaryThread(operationLabel);
-
-        long totalStart = System.currentTimeMillis();
-        boolean partialFailure = false;
-
-        long playerPhaseStart = System.currentTimeMillis();
-        boolean serverPlayerFlushSucceeded = true;
-        try {
-            Bukkit.getServer().savePlayers();
-        } catch (Exception e) {
-            serverPlayerFlushSucceeded = false;
-            partialFailure = true;
-            logger.error(category, operationLabel + ": savePlayers() failed: " + e.getMessage());
-        }
+        Execution execution = new Execution(plugin, category, operationLabel);
+        execution.flushPlayers();
+        execution.saveWorldsSynchronously(execution.plan.getWorlds());
+        return execution.finish(0L);
+    }
 
-        int playerCount = 0;
-        int savedPlayers = 0;
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            playerCount++;
-            try {
-                player.saveData();
-                savedPlayers++;
-            } catch (Exception e) {
-                partialFailure = true;
-                logger.error(category, operationLabel + ": failed to save player '" + player.getName()
-                        + "': " + e.getMessage());
+    /**
+     * Same as {@link #save}, but on servers that support it the world region I/O runs off the main thread.
+     * The future completes on an I/O thread once every world's chunks are on disk; on plain Spigot it is
+     * already complete when this method returns.
+     */
+    public static CompletableFuture<SaveResult> saveAsync(MineBackupPlugin plugin, String category, String operationLabel) {
+        Execution execution = new Execution(plugin, category, operationLabel);
+        execution.flushPlayers();
+
+        if (!Config.isAsyncWorldSaveEnabled() || execution.plan.getWorlds().isEmpty()
+                || !AsyncWorldSaver.isSupported(execution.plan.getWorlds().get(0))) {
+            if (Config.isAsyncWorldSaveEnabled() && !execution.plan.getWorlds().isEmpty()) {
+                plugin.getBackupLogger().debug(category, "Async world save unavailable, using synchronous save: "
+                        + AsyncWorldSaver.getUnsupportedReason(execution.plan.getWorlds().get(0)));
             }
+            execution.saveWorldsSynchronously(execution.plan.getWorlds());
+            return CompletableFuture.completedFuture(execution.finish(0L));
         }
-        long playerPhaseMillis = System.currentTimeMillis() - playerPhaseStart;
 
+        execution.worldSaveMode = "async";
         long worldPhaseStart = System.currentTimeMillis();
-        int worldCount = 0;
-        int savedWorlds = 0;
-        for (World world : Bukkit.getWorlds()) {
-            worldCount++;
-            try {
-                world.save();
-                savedWorlds++;
-            } catch (Exception e) {
-                partialFailure = true;
-                logger.error(category, operationLabel + ": failed to save world '" + world.getName()
-                        + "': " + e.getMessage());
-            }
+        List<CompletableFuture<Void>> pendingWrites = new ArrayList<>();
+        Map<World, Exception> failedWorlds = new LinkedHashMap<>();
+        AsyncWorldSaver.saveAll(execution.plan.getWorlds(), failedWorlds).forEach((world, write) -> {
+            execution.worldCount++;
+            pendingWrites.add(write.whenComplete((ignored, error) -> {
+                if (error == null) {
+                    execution.savedWorldsAsync.incrementAndGet();
+                } else {
+                    execution.partialFailure = true;
+                    execution.logger.error(category, operationLabel + ": async region write for world '"
+                            + world.getName() + "' failed: " + error.getMessage());
+                }
+            }));
+        });
+        List<World> fallbackWorlds = new ArrayList<>(failedWorlds.keySet());
+        failedWorlds.forEach((world, error) -> execution.logger.warn(category, operationLabel
+                + ": async save of world '" + world.getName() + "' failed, saving synchronously: " + error.getMessage()));
+        execution.worldPhaseMillis = System.currentTimeMillis() - worldPhaseStart;
+        if (!fallbackWorlds.isEmpty()) {
+            long fallbackPhase = execution.worldPhaseMillis;
+            execution.saveWorldsSynchronously(fallbackWorlds);
+            execution.worldPhaseMillis += fallbackPhase;
         }
-        long worldPhaseMillis = System.currentTimeMillis() - worldPhaseStart;
-        long totalMillis = System.currentTimeMillis() - totalStart;
-
-        SaveResult result = new SaveResult(
-                operationLabel,
-                serverPlayerFlushSucceeded,
-                playerCount,
-                savedPlayers,
-                worldCount,
-                savedWorlds,
-                playerPhaseMillis,
-                worldPhaseMillis,
-                totalMillis,
-                partialFailure
-        );
-
-        logger.info(category, result.toLogMessage());
-        return result;
+
+        long ioStart = System.currentTimeMillis();
+        return CompletableFuture.allOf(pendingWrites.toArray(new CompletableFuture[0]))
+                .handle((ignored, error) -> execution.finish(System.currentTimeMillis() - ioStart));
     }
 
-    private static void ensurePrimaryThread(String operationLabel) {
-        if (!Bukkit.isPrimaryThread()) {
+    private static void ensurePrimaryThread(MineBackupPlugin plugin, String operationLabel) {
+        if (!plugin.getPluginScheduler().isGlobalThread()) {
             throw new IllegalStateException(operationLabel + " must run on the primary server thread");
         }
     }
 
+    private static final class Execution {
+        private final BackupLogger logger;
+        private final PlayerDirtyTracker dirtyTracker;
+        private final String category;
+        private final String operationLabel;
+        private final SavePlan plan;
+        private final String tickHealthBefore;
+        private final long totalStart;
+
+        private volatile boolean partialFailure;
+        private boolean serverPlayerFlushSucceeded = true;
+        private int playerCount;
+        private int savedPlayers;
+        private long playerPhaseMillis;
+        private String worldSaveMode = "sync";
+        private int worldCount;
+        private int savedWorlds;
+        private final AtomicInteger savedWorldsAsync = new AtomicInteger();
+        private long worldPhaseMillis;
+
+        private Execution(MineBackupPlugin plugin, String category, String operationLabel) {
+            ensurePrimaryThread(plugin, operationLabel);
+            this.logger = plugin.getBackupLogger();
+            this.dirtyTracker = plugin.getPlayerDirtyTracker();
+            this.category = category;
+            this.operationLabel = operationLabel;
+            this.totalStart = System.currentTimeMillis();
+            TickHealthMonitor tickHealth = plugin.getTickHealthMonitor();
+            this.tickHealthBefore = tickHealth != null ? tickHealth.describe() : "n/a";
+            this.plan = SavePlan.create(dirtyTracker);
+        }
+
+        private void flushPlayers() {
+            long playerPhaseStart = System.currentTimeMillis();
+            playerCount = plan.getPlayers().size();
+            boolean flushIndividually = plan.getPlayerFlushMode() != SavePlan.PlayerFlushMode.BULK;
+            if (!flushIndividually) {
+                try {
+                    Bukkit.getServer().savePlayers();
+                    savedPlayers = playerCount;
+                    if (dirtyTracker != null) {
+                        dirtyTracker.markAllFlushed();
+                    }
+                } catch (Exception e) {
+                    serverPlayerFlushSucceeded = false;
+                    flushIndividually = true;
+                    logger.warn(category, operationLabel + ": savePlayers() failed, retrying per player to isolate failures: "
+                            + e.getMessage());
+                }
+            }
+
+            if (flushIndividually) {
+                for (Player player : plan.getPlayers()) {
+                    try {
+                        player.saveData();
+                        savedPlayers++;
+                        if (dirtyTracker != null) {
+                            dirtyTracker.markFlushed(player);
+                        }
+                    } catch (Exception e) {
+                        partialFailure = true;
+                        logger.error(category, operationLabel + ": failed to save player '" + player.getName()
+                                + "': " + e.getMessage());
+                    }
+                }
+            }
+            playerPhaseMillis = System.currentTimeMillis() - playerPhaseStart;
+        }
+
+        private void saveWorldsSynchronously(List<World> worlds) {
+            long worldPhaseStart = System.currentTimeMillis();
+            for (World world : worlds) {
+                worldCount++;
+                try {
+                    world.save();
+                    savedWorlds++;
+                } catch (Exception e) {
+                    partialFailure = true;
+                    logger.error(category, operationLabel + ": failed to save world '" + world.getName()
+                            + "': " + e.getMessage());
+                }
+            }
+            worldPhaseMillis = System.currentTimeMillis() - worldPhaseStart;
+        }
+
+        private SaveResult finish(long worldIoMillis) {
+            SaveResult result = new SaveResult(
+                    operationLabel,
+                    plan.getPlayerFlushMode(),
+                    serverPlayerFlushSucceeded,
+                    playerCount,
+                    plan.getSkippedPlayerCount(),
+                    savedPlayers,
+                    worldSaveMode,
+                    worldCount,
+                    savedWorlds + savedWorldsAsync.get(),
+                    playerPhaseMillis,
+                    worldPhaseMillis,
+                    worldIoMillis,
+                    System.currentTimeMillis() - totalStart,
+                    tickHealthBefore,
+                    partialFailure
+            );
+
+            logger.info(category, result.toLogMessage());
+            return result;
+        }
+    }
+
     public static final class SaveResult {
         private final String operationLabel;
+        private final SavePlan.PlayerFlushMode playerFlushMode;
         private final boolean serverPlayerFlushSucceeded;
         private final int playerCount;
+        private final int skippedPlayers;
         private final int savedPlayers;
+        private final String worldSaveMode;
         private final int worldCount;
         private final int savedWorlds;
         private final long playerPhaseMillis;
         private final long worldPhaseMillis;
+        private final long worldIoMillis;
         private final long totalMillis;
+        private final String tickHealthBefore;
         private final boolean partialFailure;
 
         private SaveResult(String operationLabel,
+                           SavePlan.PlayerFlushMode playerFlushMode,
                            boolean serverPlayerFlushSucceeded,
                            int playerCount,
+                           int skippedPlayers,
                            int savedPlayers,
+                           String worldSaveMode,
                            int worldCount,
                            int savedWorlds,
                            long playerPhaseMillis,
                            long worldPhaseMillis,
+                           long worldIoMillis,
                            long totalMillis,
+                           String tickHealthBefore,
                            boolean partialFailure) {
             this.operationLabel = operationLabel;
+            this.playerFlushMode = playerFlushMode;
             this.serverPlayerFlushSucceeded = serverPlayerFlushSucceeded;
             this.playerCount = playerCount;
+            this.skippedPlayers = skippedPlayers;
             this.savedPlayers = savedPlayers;
+            this.worldSaveMode = worldSaveMode;
             this.worldCount = worldCount;
             this.savedWorlds = savedWorlds;
             this.playerPhaseMillis = playerPhaseMillis;
             this.worldPhaseMillis = worldPhaseMillis;
+            this.worldIoMillis = worldIoMillis;
             this.totalMillis = totalMillis;
+            this.tickHealthBefore = tickHealthBefore;
             this.partialFailure = partialFailure;
         }
 
@@ -120,11 +242,15 @@ public final class LocalSaveCoordinator {
 
         public String toLogMessage() {
             return operationLabel + " completed: players=" + savedPlayers + "/" + playerCount
-                    + ", worlds=" + savedWorlds + "/" + worldCount
+                    + (skippedPlayers > 0 ? " (" + skippedPlayers + " unchanged skipped)" : "")
+                    + ", playerFlush=" + playerFlushMode.getConfigName()
+                    + ", worlds=" + savedWorlds + "/" + worldCount + " (" + worldSaveMode + ")"
                     + ", playerPhase=" + playerPhaseMillis + "ms"
                     + ", worldPhase=" + worldPhaseMillis + "ms"
+                    + ("async".equals(worldSaveMode) ? ", worldIo=" + worldIoMillis + "ms off-thread" : "")
                     + ", total=" + totalMillis + "ms"
-                    + ", savePlayers=" + (serverPlayerFlushSucceeded ? "ok" : "failed")
+                    + ", tickHealth=" + tickHealthBefore
+                    + (serverPlayerFlushSucceeded ? "" : ", savePlayers=failed")
                     + (partialFailure ? " (partial failure)" : "");
         }
     }
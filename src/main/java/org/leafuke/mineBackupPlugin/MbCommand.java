@@ -1,6 +1,5 @@
 package org.leafuke.mineBackupPlugin;
 
-import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -27,7 +26,7 @@ public class MbCommand implements CommandExecutor, TabCompleter {
     private static final List<String> SUBCOMMANDS = Arrays.asList(
             "help", "save", "list_configs", "list_worlds", "list_backups",
             "backup", "restore", "quickbackup", "quicksave", "quickrestore",
-            "auto", "stop", "snap", "confirm", "abort", "status", "reload"
+            "auto", "stop", "snap", "confirm", "abort", "status", "diag", "reload", "reload_world"
     );
 
     private final MineBackupPlugin plugin;
@@ -65,7 +64,9 @@ public class MbCommand implements CommandExecutor, TabCompleter {
             case "confirm" -> handleConfirm(sender);
             case "abort" -> handleAbort(sender);
             case "status" -> handleStatus(sender);
+            case "diag" -> handleDiag(sender);
             case "reload" -> handleReload(sender);
+            case "reload_world" -> handleReloadWorld(sender);
             default -> sender.sendMessage(CommandHelpRegistry.buildRootHelp(sender, plugin.getLanguageManager()));
         }
         return true;
@@ -252,6 +253,7 @@ public class MbCommand implements CommandExecutor, TabCompleter {
         String command = "AUTO_BACKUP " + configId + " " + worldIndex + " " + intervalSeconds;
         plugin.getBackupLogger().info("AUTO_BACKUP", sender.getName() + " set auto backup: " + command);
         executeRemoteCommand(sender, command);
+        plugin.getPreFlushScheduler().onAutoBackupScheduled();
     }
 
     private void handleStop(CommandSender sender, String[] args) {
@@ -275,6 +277,7 @@ public class MbCommand implements CommandExecutor, TabCompleter {
         String command = "STOP_AUTO_BACKUP " + configId + " " + worldIndex;
         plugin.getBackupLogger().info("AUTO_BACKUP", sender.getName() + " stopped auto backup: " + command);
         executeRemoteCommand(sender, command);
+        plugin.getPreFlushScheduler().onAutoBackupScheduled();
     }
 
     private void handleSnap(CommandSender sender, String[] args) {
@@ -328,22 +331,23 @@ public class MbCommand implements CommandExecutor, TabCompleter {
         builder.append(languageManager.getTranslation(sender, "minebackup.status.version",
                 MineBackupPlugin.PLUGIN_VERSION)).append("\n");
 
-        String connectionStatus = HotRestoreState.handshakeCompleted
+        HotRestoreState.Handshake handshake = HotRestoreState.handshake();
+        String connectionStatus = handshake != null
                 ? languageManager.getTranslation(sender, "minebackup.status.connected")
                 : languageManager.getTranslation(sender, "minebackup.status.not_connected");
         builder.append(languageManager.getTranslation(sender, "minebackup.status.connection", connectionStatus)).append("\n");
 
-        if (HotRestoreState.handshakeCompleted && HotRestoreState.mainProgramVersion != null) {
+        if (handshake != null && handshake.mainProgramVersion() != null) {
             builder.append(languageManager.getTranslation(sender, "minebackup.status.main_version",
-                    HotRestoreState.mainProgramVersion)).append("\n");
-            String compatibility = HotRestoreState.versionCompatible
+                    handshake.mainProgramVersion())).append("\n");
+            String compatibility = handshake.versionCompatible()
                     ? languageManager.getTranslation(sender, "minebackup.status.compatible")
                     : languageManager.getTranslation(sender, "minebackup.status.incompatible");
             builder.append(languageManager.getTranslation(sender, "minebackup.status.compatibility", compatibility)).append("\n");
         }
 
         RestoreTask task = RestoreTask.getCurrentTask();
-        String restoreStatus = task != null && task.getPhase() != RestoreTask.Phase.NONE
+        String restoreStatus = task != null && task.getPhase() != HotRestoreState.Phase.IDLE
                 ? languageManager.getTranslation(sender, "minebackup.status.restore_active",
                 task.getPhase().getDisplayName(), task.getInitiator())
                 : languageManager.getTranslation(sender, "minebackup.status.restore_none");
@@ -357,16 +361,19 @@ public class MbCommand implements CommandExecutor, TabCompleter {
                 : languageManager.getTranslation(sender, "minebackup.status.auto_backup_off");
         builder.append(languageManager.getTranslation(sender, "minebackup.status.auto_backup", autoStatus)).append("\n");
 
-        String relayStatus;
-        if (!HotRestoreState.relaySessionActive) {
-            relayStatus = languageManager.getTranslation(sender, "minebackup.status.restart_relay_idle");
-        } else if (!HotRestoreState.sidecarReady) {
-            relayStatus = languageManager.getTranslation(sender, "minebackup.status.restart_relay_starting");
-        } else {
-            relayStatus = languageManager.getTranslation(sender, "minebackup.status.restart_relay_active");
-        }
+        String relayStatus = switch (HotRestoreState.current().relay()) {
+            case NONE -> languageManager.getTranslation(sender, "minebackup.status.restart_relay_idle");
+            case STARTING -> languageManager.getTranslation(sender, "minebackup.status.restart_relay_starting");
+            case ACTIVE -> languageManager.getTranslation(sender, "minebackup.status.restart_relay_active");
+        };
         builder.append(languageManager.getTranslation(sender, "minebackup.status.restart_relay", relayStatus)).append("\n");
 
+        String restoreTimeline = RestoreTimeline.summarize(plugin.getDataFolder().toPath());
+        if (restoreTimeline != null) {
+            builder.append(languageManager.getTranslation(sender, "minebackup.status.restore_timeline",
+                    restoreTimeline)).append("\n");
+        }
+
         String debugStatus = Config.isDebug()
                 ? languageManager.getTranslation(sender, "minebackup.status.debug_on")
                 : languageManager.getTranslation(sender, "minebackup.status.debug_off");
@@ -374,6 +381,50 @@ public class MbCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(builder.toString());
     }
 
+    private void handleDiag(CommandSender sender) {
+        LanguageManager languageManager = plugin.getLanguageManager();
+        HotRestoreState.State state = HotRestoreState.current();
+        long now = System.currentTimeMillis();
+        StringBuilder builder = new StringBuilder(languageManager.getTranslation(sender, "minebackup.diag.title"));
+
+        builder.append("\n").append(languageManager.getTranslation(sender, "minebackup.diag.phase",
+                state.phase().getDisplayName(), RestoreTimeline.formatDuration(now - state.changedAtMillis()),
+                String.valueOf(state.version())));
+        if (state.relay() == HotRestoreState.Relay.NONE) {
+            builder.append("\n").append(languageManager.getTranslation(sender, "minebackup.diag.relay_none"));
+        } else {
+            builder.append("\n").append(languageManager.getTranslation(sender, "minebackup.diag.relay",
+                    state.relay().name(), String.valueOf(state.lastRelaySequence()),
+                    RestoreTimeline.formatDuration(state.relayDeadlineMillis() - now)));
+        }
+
+        HotBackupSession hotBackupSession = plugin.getHotBackupSession();
+        if (hotBackupSession != null) {
+            builder.append("\n").append(languageManager.getTranslation(sender, "minebackup.diag.freeze",
+                    hotBackupSession.isFrozen() ? "frozen" : "idle", hotBackupSession.describe()));
+        }
+
+        RestoreTask task = RestoreTask.getCurrentTask();
+        builder.append("\n").append(task != null
+                ? languageManager.getTranslation(sender, "minebackup.diag.task",
+                task.getInitiator(), String.valueOf(task.isRemote()))
+                : languageManager.getTranslation(sender, "minebackup.diag.task_none"));
+
+        List<HotRestoreState.Transition> history = HotRestoreState.history();
+        if (history.isEmpty()) {
+            builder.append("\n").append(languageManager.getTranslation(sender, "minebackup.diag.history_empty"));
+        } else {
+            builder.append("\n").append(languageManager.getTranslation(sender, "minebackup.diag.history_title"));
+            for (HotRestoreState.Transition transition : history) {
+                builder.append("\n ").append(languageManager.getTranslation(sender,
+                        transition.accepted() ? "minebackup.diag.history_entry" : "minebackup.diag.history_rejected",
+                        RestoreTimeline.formatDuration(now - transition.atMillis()),
+                        transition.from(), transition.to(), transition.cause(), transition.thread()));
+            }
+        }
+        sender.sendMessage(builder.toString());
+    }
+
     private void handleReload(CommandSender sender) {
         try {
             Config.reload(plugin);
@@ -386,6 +437,18 @@ public class MbCommand implements CommandExecutor, TabCompleter {
         }
     }
 
+    private void handleReloadWorld(CommandSender sender) {
+        WorldScopedRestore worldRestore = WorldScopedRestore.getActive();
+        if (worldRestore == null) {
+            plugin.getLanguageManager().sendMessage(sender, "minebackup.reload_world.none");
+            return;
+        }
+        plugin.getBackupLogger().warn("RESTORE", sender.getName() + " reloaded world '" + worldRestore.getWorldName()
+                + "' without a restore result.");
+        plugin.getLanguageManager().sendMessage(sender, "minebackup.reload_world.reloading", worldRestore.getWorldName());
+        plugin.getPluginScheduler().executeGlobal(() -> worldRestore.finish(false));
+    }
+
     private void startRestoreWithPipeline(CommandSender sender, String restoreCommand) {
         if (RestoreTask.hasActiveTask()) {
             plugin.getLanguageManager().sendMessage(sender, "minebackup.restore.already_running");
@@ -432,7 +495,7 @@ public class MbCommand implements CommandExecutor, TabCompleter {
     }
 
     private void handleGenericResponse(CommandSender sender, String response, String commandType) {
-        Bukkit.getScheduler().runTask(plugin, () -> {
+        plugin.getPluginScheduler().runGlobal(() -> {
             if (response != null && response.startsWith("ERROR:")) {
                 plugin.getLanguageManager().sendMessage(sender, "minebackup.command.fail",
                         Messages.localizeError(sender, response));
@@ -446,7 +509,7 @@ public class MbCommand implements CommandExecutor, TabCompleter {
     }
 
     private void handleListConfigsResponse(CommandSender sender, String response) {
-        Bukkit.getScheduler().runTask(plugin, () -> {
+        plugin.getPluginScheduler().runGlobal(() -> {
             if (response == null || !response.startsWith("OK:")) {
                 plugin.getLanguageManager().sendMessage(sender, "minebackup.list_configs.fail",
                         Messages.localizeError(sender, response));
@@ -472,7 +535,7 @@ public class MbCommand implements CommandExecutor, TabCompleter {
     }
 
     private void handleListWorldsResponse(CommandSender sender, String response, String configId) {
-        Bukkit.getScheduler().runTask(plugin, () -> {
+        plugin.getPluginScheduler().runGlobal(() -> {
             if (response == null || !response.startsWith("OK:")) {
                 plugin.getLanguageManager().sendMessage(sender, "minebackup.list_worlds.fail",
                         Messages.localizeError(sender, response));
@@ -497,7 +560,7 @@ public class MbCommand implements CommandExecutor, TabCompleter {
     }
 
     private void handleListBackupsResponse(CommandSender sender, String response, String configId, int worldIndex) {
-        Bukkit.getScheduler().runTask(plugin, () -> {
+        plugin.getPluginScheduler().runGlobal(() -> {
             if (response == null || !response.startsWith("OK:")) {
                 plugin.getLanguageManager().sendMessage(sender, "minebackup.list_backups.fail",
                         Messages.localizeError(sender, response));
@@ -4,14 +4,20 @@ import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitTask;
 import org.leafuke.mineBackupPlugin.knotlink.OpenSocketQuerier;
 import org.leafuke.mineBackupPlugin.knotlink.SignalSubscriber;
+import org.leafuke.mineBackupPlugin.scheduler.PluginScheduler;
+import org.leafuke.mineBackupPlugin.scheduler.PluginSchedulers;
+import org.leafuke.mineBackupPlugin.scheduler.TaskHandle;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 
 public final class MineBackupPlugin extends JavaPlugin {
     public static final String PLUGIN_VERSION = "2.0.0";
@@ -19,18 +25,39 @@ public final class MineBackupPlugin extends JavaPlugin {
     public static final String BROADCAST_SIGNAL_ID = "0x00000020";
     public static final String QUERIER_APP_ID = "0x00000020";
     public static final String QUERIER_SOCKET_ID = "0x00000010";
+    private static final long SPIKE_SETTLE_MAX_WAIT_MILLIS = 1000L;
+    private static final int EVENT_DEDUPE_CAPACITY = 256;
+    // Live and relayed copies of one broadcast are stamped within milliseconds of each other.
+    private static final long EVENT_DEDUPE_WINDOW_MILLIS = 5000L;
+    // Only these can reach a restarted server both live and through the sidecar relay. Everything else may
+    // legitimately repeat with an identical payload (two remote saves, two hot backups) and is never deduplicated.
+    private static final Set<String> RELAYED_EVENT_TYPES =
+            Set.of("handshake", "restore_finished", "restore_success", "rejoin_world");
 
     private static MineBackupPlugin instance;
 
     private SignalSubscriber knotLinkSubscriber;
     private LanguageManager languageManager;
     private BackupLogger backupLogger;
-    private BukkitTask relayPollTask;
-    private BukkitTask autoSaveFreezeWatchdogTask;
+    private PluginScheduler scheduler;
+    private PlayerDirtyTracker playerDirtyTracker;
+    private PreFlushScheduler preFlushScheduler;
+    private TickHealthMonitor tickHealthMonitor;
+    private WorldSnapshotStager snapshotStager;
+    private ChangedFileManifest changedFileManifest;
+    private ChunkChangeJournal chunkChangeJournal;
+    private TaskHandle relayPollTask;
     private RestartRelayStore.Session relaySession;
+    private RelayRing relayRing;
+    private final EventDeduplicator eventDeduplicator =
+            new EventDeduplicator(EVENT_DEDUPE_CAPACITY, EVENT_DEDUPE_WINDOW_MILLIS);
     private volatile String lastHandshakeBroadcastVersion;
-    private final Map<String, Boolean> worldAutoSaveStates = new ConcurrentHashMap<>();
-    private volatile long autoSaveFreezeTimestampMillis;
+    private HotBackupSession hotBackupSession;
+    private BackupProgressDisplay backupProgressDisplay;
+    private volatile long hotBackupCutoffMillis;
+    // Saves waiting for tick health, by kind. A repeated request replaces the waiting one instead of adding a save.
+    private final Map<String, DeferredSave> deferredSaves = new LinkedHashMap<>();
+    private TaskHandle deferredSaveTask;
 
     public static MineBackupPlugin getInstance() {
         return instance;
@@ -44,19 +71,70 @@ public final class MineBackupPlugin extends JavaPlugin {
         return backupLogger;
     }
 
+    public PluginScheduler getPluginScheduler() {
+        return scheduler;
+    }
+
+    public PlayerDirtyTracker getPlayerDirtyTracker() {
+        return playerDirtyTracker;
+    }
+
+    public PreFlushScheduler getPreFlushScheduler() {
+        return preFlushScheduler;
+    }
+
+    public TickHealthMonitor getTickHealthMonitor() {
+        return tickHealthMonitor;
+    }
+
+    public ChangedFileManifest getChangedFileManifest() {
+        return changedFileManifest;
+    }
+
+    public HotBackupSession getHotBackupSession() {
+        return hotBackupSession;
+    }
+
+    public boolean isAutoSaveFrozen() {
+        return hotBackupSession != null && hotBackupSession.isFrozen();
+    }
+
     @Override
     public void onEnable() {
         instance = this;
         long startTime = System.currentTimeMillis();
 
         Config.load(this);
+        scheduler = PluginSchedulers.create(this);
         OpenSocketQuerier.initializeExecutor();
         languageManager = new LanguageManager(this);
         backupLogger = new BackupLogger(this);
+        snapshotStager = new WorldSnapshotStager(getDataFolder().toPath().resolve(Config.getSnapshotDirectory()));
+        playerDirtyTracker = new PlayerDirtyTracker();
+        Bukkit.getPluginManager().registerEvents(playerDirtyTracker, this);
+        if (Config.isChangeManifestEnabled()) {
+            RegionHashIndex contentIndex = Config.isContentHashEnabled()
+                    ? new RegionHashIndex(backupLogger, getDataFolder().toPath())
+                    : null;
+            changedFileManifest = new ChangedFileManifest(this, contentIndex);
+            List<Path> worldFolders = new ArrayList<>();
+            for (World world : Bukkit.getWorlds()) {
+                worldFolders.add(world.getWorldFolder().toPath());
+            }
+            changedFileManifest.load(worldFolders);
+            Bukkit.getPluginManager().registerEvents(changedFileManifest, this);
+        }
+        if (Config.isChunkJournalEnabled()) {
+            chunkChangeJournal = new ChunkChangeJournal(backupLogger, getDataFolder().toPath(),
+                    Config.getChunkJournalCapacity(), Config.getChunkJournalMaxSizeMb() * 1024L * 1024L);
+            chunkChangeJournal.start();
+            Bukkit.getPluginManager().registerEvents(chunkChangeJournal, this);
+        }
 
         backupLogger.info("SYSTEM", "=== MineBackup Spigot Plugin v" + PLUGIN_VERSION + " starting ===");
         backupLogger.info("SYSTEM", "Minecraft server: " + Bukkit.getVersion());
         backupLogger.info("SYSTEM", "Bukkit API: " + Bukkit.getBukkitVersion());
+        backupLogger.info("SYSTEM", "Scheduler: " + scheduler.getName());
 
         boolean postRestoreRestart = ServerRestartManager.isPostRestoreRestart();
         if (postRestoreRestart) {
@@ -64,15 +142,22 @@ public final class MineBackupPlugin extends JavaPlugin {
             ServerRestartManager.cleanupRestartFlag(backupLogger);
         }
 
-        HotRestoreState.reset();
+        HotRestoreState.reset("plugin enabled");
+        RestoreTimeline.mark(getDataFolder().toPath(), RestoreTimeline.PLUGIN_ENABLE);
+        hotBackupSession = new HotBackupSession(this);
+        backupProgressDisplay = new BackupProgressDisplay(this);
         startRelayPollingIfNeeded();
+        scheduler.runAsync(() -> ServerRestartManager.startWarmSidecar(this));
         startKnotLinkSubscriber();
-        startAutoSaveFreezeWatchdog();
         restoreAutoBackupIfNeeded();
+        tickHealthMonitor = new TickHealthMonitor(this);
+        tickHealthMonitor.start();
+        preFlushScheduler = new PreFlushScheduler(this);
+        preFlushScheduler.start();
         registerCommands();
 
         if (postRestoreRestart) {
-            Bukkit.getScheduler().runTaskLater(this, () ->
+            scheduler.runGlobalLater(() ->
                     languageManager.broadcastMessage("minebackup.post_restore.detected"), 100L);
         }
 
@@ -82,13 +167,34 @@ public final class MineBackupPlugin extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        ServerRestartManager.cancelPrelaunchedSidecar(this);
         if (relayPollTask != null) {
             relayPollTask.cancel();
             relayPollTask = null;
         }
-        if (autoSaveFreezeWatchdogTask != null) {
-            autoSaveFreezeWatchdogTask.cancel();
-            autoSaveFreezeWatchdogTask = null;
+        if (relayRing != null) {
+            relayRing.close();
+            relayRing = null;
+        }
+        if (preFlushScheduler != null) {
+            preFlushScheduler.stop();
+            preFlushScheduler = null;
+        }
+        if (tickHealthMonitor != null) {
+            tickHealthMonitor.stop();
+            tickHealthMonitor = null;
+        }
+        if (deferredSaveTask != null) {
+            deferredSaveTask.cancel();
+            deferredSaveTask = null;
+        }
+        deferredSaves.clear();
+        if (changedFileManifest != null) {
+            changedFileManifest.save();
+        }
+        if (chunkChangeJournal != null) {
+            chunkChangeJournal.stop();
+            chunkChangeJournal = null;
         }
 
         if (knotLinkSubscriber != null) {
@@ -97,7 +203,12 @@ public final class MineBackupPlugin extends JavaPlugin {
             backupLogger.info("SYSTEM", "KnotLink subscriber stopped.");
         }
 
-        restoreWorldAutoSave();
+        if (backupProgressDisplay != null) {
+            backupProgressDisplay.stop();
+        }
+        if (hotBackupSession != null) {
+            hotBackupSession.release("plugin disabled");
+        }
 
         OpenSocketQuerier.shutdownExecutor();
 
@@ -107,14 +218,10 @@ public final class MineBackupPlugin extends JavaPlugin {
         }
     }
 
-    private void startAutoSaveFreezeWatchdog() {
-        autoSaveFreezeWatchdogTask = Bukkit.getScheduler().runTaskTimer(this,
-                this::checkAutoSaveFreezeTimeout, 20L, 20L);
-    }
-
     private void startKnotLinkSubscriber() {
         knotLinkSubscriber = new SignalSubscriber(BROADCAST_APP_ID, BROADCAST_SIGNAL_ID);
-        knotLinkSubscriber.setSignalListener(this::handleBroadcastEvent);
+        knotLinkSubscriber.setSignalListener(payload ->
+                handleBroadcastEvent(payload, System.currentTimeMillis(), "live"));
 
         Thread subscriberThread = new Thread(knotLinkSubscriber::start, "minebackup-subscriber");
         subscriberThread.setDaemon(true);
@@ -150,9 +257,9 @@ public final class MineBackupPlugin extends JavaPlugin {
     }
 
     private void startRelayPollingIfNeeded() {
-        relaySession = RestartRelayStore.readSession(getDataFolder().toPath());
+        relaySession = RestartRelayStore.readCommittedSession(getDataFolder().toPath());
         if (relaySession == null) {
-            HotRestoreState.resetRelay();
+            HotRestoreState.endRelay("no committed relay session");
             RestartRelayStore.cleanup(getDataFolder().toPath());
             return;
         }
@@ -160,66 +267,98 @@ public final class MineBackupPlugin extends JavaPlugin {
         long now = System.currentTimeMillis();
         if (now > relaySession.relayDeadlineMillis()) {
             backupLogger.info("RESTART", "Found expired relay session, cleaning it up.");
-            HotRestoreState.resetRelay();
+            HotRestoreState.endRelay("relay session expired");
             RestartRelayStore.cleanup(getDataFolder().toPath());
             relaySession = null;
             return;
         }
 
-        HotRestoreState.relaySessionActive = true;
-        HotRestoreState.sidecarReady = RestartRelayStore.isSidecarReady(getDataFolder().toPath(), relaySession.id());
-        HotRestoreState.relaySessionDeadlineMillis = relaySession.relayDeadlineMillis();
-        HotRestoreState.lastRelaySequence = 0L;
+        HotRestoreState.startRelay(RestartRelayStore.isSidecarReady(getDataFolder().toPath(), relaySession.id()),
+                relaySession.relayDeadlineMillis(), "relay session resumed after restart");
 
-        relayPollTask = Bukkit.getScheduler().runTaskTimer(this, this::pollRelayEvents, 20L, 20L);
+        try {
+            relayRing = RelayRing.open(getDataFolder().toPath(), true);
+        } catch (IOException e) {
+            backupLogger.error("RESTART", "Failed to open relay ring, dropping relay session: " + e.getMessage());
+            HotRestoreState.endRelay("relay ring unavailable");
+            relaySession = null;
+            return;
+        }
+        // Polling the ring only reads mapped memory, so it is cheap enough to do every tick.
+        relayPollTask = scheduler.runGlobalTimer(this::pollRelayEvents, 1L, 1L);
+        // Once the server ticks our own subscriber is listening, so the sidecar can stop relaying.
+        RestartRelayStore.Session session = relaySession;
+        scheduler.runGlobalLater(() -> {
+            try {
+                RestartRelayStore.acknowledgeRelay(getDataFolder().toPath(), session.id());
+            } catch (IOException e) {
+                backupLogger.warn("RESTART", "Failed to acknowledge relay session: " + e.getMessage());
+            }
+        }, 20L);
         backupLogger.info("RESTART", "Relay session active, waiting for sidecar events. sessionId=" + relaySession.id());
     }
 
     private void pollRelayEvents() {
-        if (relaySession == null) {
+        // A delivered event can finish the session mid-poll, so work on what was open when the poll started.
+        RestartRelayStore.Session session = relaySession;
+        RelayRing ring = relayRing;
+        if (session == null || ring == null) {
             finishRelaySession("relay session missing");
             return;
         }
 
-        HotRestoreState.sidecarReady = RestartRelayStore.isSidecarReady(getDataFolder().toPath(), relaySession.id());
-
-        List<RestartRelayStore.RelayEvent> events = RestartRelayStore.readRelayEvents(getDataFolder().toPath());
-        for (RestartRelayStore.RelayEvent event : events) {
-            if (event.sequence() <= HotRestoreState.lastRelaySequence) {
-                continue;
-            }
+        if (HotRestoreState.current().relay() == HotRestoreState.Relay.STARTING && ring.isReady(session.id())) {
+            HotRestoreState.markSidecarReady("sidecar reported ready");
+        }
 
-            HotRestoreState.lastRelaySequence = event.sequence();
-            backupLogger.info("RESTART", "Replaying sidecar relay event #" + event.sequence() + ": " + event.payload());
-            handleBroadcastEvent(event.payload());
+        for (RestartRelayStore.RelayEvent event : ring.poll()) {
+            deliverRelayEvent(event);
         }
 
-        if (System.currentTimeMillis() > relaySession.relayDeadlineMillis()) {
+        if (relaySession == session && System.currentTimeMillis() > session.relayDeadlineMillis()) {
             finishRelaySession("relay timeout reached");
         }
     }
 
+    private void deliverRelayEvent(RestartRelayStore.RelayEvent event) {
+        if (!HotRestoreState.advanceRelaySequence(event.sequence())) {
+            return;
+        }
+
+        long latencyMillis = System.currentTimeMillis() - event.receivedAtMillis();
+        backupLogger.info("RESTART", "Replaying sidecar relay event #" + event.sequence()
+                + " (" + latencyMillis + "ms after capture): " + event.payload());
+        handleBroadcastEvent(event.payload(), event.receivedAtMillis(), "relay");
+    }
+
     private void finishRelaySession(String reason) {
-        if (!HotRestoreState.relaySessionActive) {
+        if (!HotRestoreState.endRelay(reason)) {
             return;
         }
 
         backupLogger.info("RESTART", "Closing relay session: " + reason);
-        HotRestoreState.resetRelay();
+        closeRestoreTimeline("relay_closed");
         RestartRelayStore.cleanup(getDataFolder().toPath());
         relaySession = null;
         if (relayPollTask != null) {
             relayPollTask.cancel();
             relayPollTask = null;
         }
+        if (relayRing != null) {
+            relayRing.close();
+            relayRing = null;
+        }
     }
 
-    private void handleBroadcastEvent(String payload) {
+    private void handleBroadcastEvent(String payload, long receivedAtMillis, String source) {
         if (!isEnabled()) {
             return;
         }
 
-        backupLogger.debug("EVENT", "Received raw broadcast: " + payload);
+        backupLogger.debug("EVENT", "Received raw broadcast (" + source + "): " + payload);
+        if (payload == null) {
+            return;
+        }
 
         if ("minebackup save".equals(payload)) {
             handleRemoteSave();
@@ -232,35 +371,55 @@ public final class MineBackupPlugin extends JavaPlugin {
             backupLogger.debug("EVENT", "Ignoring broadcast without event field: " + payload);
             return;
         }
+        if (RELAYED_EVENT_TYPES.contains(eventType) && !eventDeduplicator.markFirstSeen(payload, receivedAtMillis)) {
+            backupLogger.debug("EVENT", "Dropping duplicate broadcast from " + source + ": " + payload);
+            return;
+        }
 
-        backupLogger.info("EVENT", "Received event: " + eventType + " | data=" + eventData);
+        if ("backup_progress".equals(eventType)) {
+            // Progress can arrive many times per second; keep it out of the info log.
+            backupLogger.debug("EVENT", "Received event: " + eventType + " | data=" + eventData);
+        } else {
+            backupLogger.info("EVENT", "Received event: " + eventType + " | data=" + eventData);
+        }
         switch (eventType) {
             case "handshake" -> handleHandshake(eventData);
             case "handshake_ack", "list_configs", "list_worlds", "list_backups", "list_backups_current" ->
                     handleInternalEvent(eventType, eventData);
-            case "pre_hot_backup" -> handlePreHotBackup(eventData);
+            case "pre_hot_backup" -> {
+                backupProgressDisplay.begin();
+                handlePreHotBackup(eventData);
+            }
             case "pre_hot_restore" -> handlePreHotRestore(eventData);
             case "restore_finished", "restore_success" -> handleRestoreFinished(eventData, eventType);
             case "rejoin_world" -> handleRejoinWorld(eventData);
+            case "restore_prepare_progress", "restore_prepared" -> handleRestorePrepareEvent(eventType, eventData);
             case "game_session_start" -> backupLogger.info("SESSION", "Game session started, world=" + eventData.get("world"));
+            case "backup_progress" -> {
+                hotBackupSession.extend();
+                backupProgressDisplay.onProgress(eventData);
+            }
             case "backup_success", "backup_failed" -> {
+                backupProgressDisplay.finish();
                 handleBackupCompletionEvent(eventType, eventData);
-                Bukkit.getScheduler().runTask(this, () -> broadcastEvent(eventType, eventData));
+                scheduler.runGlobal(() -> broadcastEvent(eventType, eventData));
             }
-            default -> Bukkit.getScheduler().runTask(this, () -> broadcastEvent(eventType, eventData));
+            default -> scheduler.runGlobal(() -> broadcastEvent(eventType, eventData));
         }
     }
 
     private void handleRemoteSave() {
-        Bukkit.getScheduler().runTask(this, () -> {
+        scheduler.runGlobal(() -> {
             backupLogger.info("SAVE", "Received remote save command.");
             languageManager.broadcastMessage("minebackup.remote_save.start");
 
-            LocalSaveCoordinator.SaveResult result =
-                    LocalSaveCoordinator.save(this, "SAVE", "Remote local save");
-            languageManager.broadcastMessage(result.isPartialFailure()
-                    ? "minebackup.remote_save.fail"
-                    : "minebackup.remote_save.success");
+            runWhenTickHealthy("remote_save", false, () -> {
+                LocalSaveCoordinator.SaveResult result =
+                        LocalSaveCoordinator.save(this, "SAVE", "Remote local save");
+                languageManager.broadcastMessage(result.isPartialFailure()
+                        ? "minebackup.remote_save.fail"
+                        : "minebackup.remote_save.success");
+            });
         });
     }
 
@@ -268,16 +427,14 @@ public final class MineBackupPlugin extends JavaPlugin {
         String mainVersion = eventData.get("version");
         String minPluginVersion = eventData.get("min_mod_version");
 
-        HotRestoreState.mainProgramVersion = mainVersion;
-        HotRestoreState.handshakeCompleted = true;
-        HotRestoreState.requiredMinModVersion = minPluginVersion;
-        HotRestoreState.versionCompatible = isVersionCompatible(PLUGIN_VERSION, minPluginVersion);
+        boolean versionCompatible = isVersionCompatible(PLUGIN_VERSION, minPluginVersion);
+        HotRestoreState.completeHandshake(mainVersion, versionCompatible, minPluginVersion);
 
         OpenSocketQuerier.query(QUERIER_APP_ID, QUERIER_SOCKET_ID, "HANDSHAKE_RESPONSE " + PLUGIN_VERSION);
         backupLogger.info("HANDSHAKE", "Sent HANDSHAKE_RESPONSE with plugin version " + PLUGIN_VERSION);
 
-        Bukkit.getScheduler().runTask(this, () -> {
-            if (!HotRestoreState.versionCompatible) {
+        scheduler.runGlobal(() -> {
+            if (!versionCompatible) {
                 languageManager.broadcastMessage("minebackup.handshake.version_incompatible",
                         PLUGIN_VERSION, minPluginVersion != null ? minPluginVersion : "?");
                 backupLogger.warn("HANDSHAKE", "Version incompatible: plugin=" + PLUGIN_VERSION
@@ -294,46 +451,194 @@ public final class MineBackupPlugin extends JavaPlugin {
     }
 
     private void handlePreHotBackup(Map<String, String> eventData) {
-        Bukkit.getScheduler().runTask(this, () -> {
+        scheduler.runGlobal(() -> {
             String worldName = eventData.getOrDefault("world",
                     Bukkit.getWorlds().isEmpty() ? "unknown" : Bukkit.getWorlds().get(0).getName());
             backupLogger.info("BACKUP", "Received hot backup request.");
+            boolean scheduledBackup = false;
+            if (preFlushScheduler != null) {
+                scheduledBackup = preFlushScheduler.isScheduledBackupDue(System.currentTimeMillis());
+                preFlushScheduler.onHotBackupArrived();
+            }
             languageManager.broadcastMessage("minebackup.broadcast.hot_backup_request", worldName);
+            // Only wait out sustained lag when the backend can be told why WORLD_SAVED is late.
+            boolean deferrable = scheduledBackup && Config.isRequestBackendDelay();
+            runWhenTickHealthy("hot_backup", deferrable, () -> completeHotBackupPreSave(worldName));
+        });
+    }
+
+    private void completeHotBackupPreSave(String worldName) {
+        LocalSaveCoordinator.saveAsync(this, "BACKUP", "Hot backup pre-save").thenAccept(result -> {
+            if (scheduler.isGlobalThread()) {
+                finishHotBackupPreSave(worldName, result);
+            } else if (isEnabled()) {
+                scheduler.runGlobal(() -> finishHotBackupPreSave(worldName, result));
+            }
+        });
+    }
 
-            LocalSaveCoordinator.SaveResult result =
-                    LocalSaveCoordinator.save(this, "BACKUP", "Hot backup pre-save");
-            if (result.isPartialFailure()) {
-                languageManager.broadcastMessage("minebackup.broadcast.hot_backup_warn", worldName);
+    private void finishHotBackupPreSave(String worldName, LocalSaveCoordinator.SaveResult result) {
+        if (result.isPartialFailure()) {
+            languageManager.broadcastMessage("minebackup.broadcast.hot_backup_warn", worldName);
+        }
+
+        hotBackupSession.freeze();
+        hotBackupCutoffMillis = System.currentTimeMillis();
+        if (changedFileManifest == null) {
+            handOverSavedWorld(worldName);
+            return;
+        }
+
+        changedFileManifest.beginBackup(Bukkit.getWorlds());
+        List<Path> worldFolders = new ArrayList<>();
+        for (World world : Bukkit.getWorlds()) {
+            worldFolders.add(world.getWorldFolder().toPath());
+        }
+        scheduler.runAsync(() -> {
+            Path manifest = changedFileManifest.writeForBackup(worldFolders);
+            OpenSocketQuerier.query(QUERIER_APP_ID, QUERIER_SOCKET_ID,
+                    "CHANGED_FILES " + manifest.toAbsolutePath());
+            scheduler.runGlobal(() -> handOverSavedWorld(worldName));
+        });
+    }
+
+    private void handOverSavedWorld(String worldName) {
+        if (Config.isSnapshotStagingEnabled()) {
+            stageSnapshotThenNotify(worldName);
+            return;
+        }
+        notifyWorldSaved();
+    }
+
+    private void notifyWorldSaved() {
+        languageManager.broadcastMessage("minebackup.broadcast.hot_backup_complete");
+        OpenSocketQuerier.query(QUERIER_APP_ID, QUERIER_SOCKET_ID, "WORLD_SAVED");
+        backupLogger.info("BACKUP", "Sent WORLD_SAVED notification.");
+    }
+
+    /**
+     * Copies the just-saved world into the staging directory while auto-save is frozen, hands the staged path
+     * to the backend and unfreezes auto-save as soon as the backend accepts it, instead of keeping the live
+     * world frozen for the whole archive run.
+     */
+    private void stageSnapshotThenNotify(String worldName) {
+        World world = Bukkit.getWorld(worldName);
+        if (world == null) {
+            world = Bukkit.getWorlds().isEmpty() ? null : Bukkit.getWorlds().get(0);
+        }
+        if (world == null) {
+            backupLogger.warn("BACKUP", "No world available to stage for '" + worldName + "', backing up the live world.");
+            notifyWorldSaved();
+            return;
+        }
+
+        Path worldFolder = world.getWorldFolder().toPath();
+        Path stagingDirectory = snapshotStager.getStagingDirectory(world.getName());
+        scheduler.runAsync(() -> {
+            boolean accepted = false;
+            try {
+                WorldStagingCopier.Result staged = snapshotStager.stage(worldFolder, stagingDirectory);
+                backupLogger.info("BACKUP", staged.toLogMessage());
+                String response = OpenSocketQuerier.queryBlocking(QUERIER_APP_ID, QUERIER_SOCKET_ID,
+                        "SNAPSHOT_STAGED " + stagingDirectory.toAbsolutePath(), 500, 2000);
+                accepted = response != null && !response.startsWith("ERROR:");
+                if (!accepted) {
+                    backupLogger.warn("BACKUP", "Backend did not accept the staged snapshot (" + response
+                            + "), keeping auto-save frozen for a live-world backup.");
+                }
+            } catch (Exception e) {
+                backupLogger.error("BACKUP", "Failed to stage world snapshot, backing up the live world: " + e.getMessage());
             }
 
-            freezeWorldAutoSave();
-            languageManager.broadcastMessage("minebackup.broadcast.hot_backup_complete");
-            OpenSocketQuerier.query(QUERIER_APP_ID, QUERIER_SOCKET_ID, "WORLD_SAVED");
-            backupLogger.info("BACKUP", "Sent WORLD_SAVED notification.");
+            boolean unfreeze = accepted;
+            scheduler.runGlobal(() -> {
+                if (unfreeze) {
+                    hotBackupSession.release("backend archives the staged snapshot");
+                }
+                notifyWorldSaved();
+            });
         });
     }
 
+    /**
+     * Runs {@code action} now, or once tick health allows. While a save of the same {@code kind} is already
+     * waiting, the new request takes its place and keeps its start time, so repeated requests cost one save.
+     */
+    private void runWhenTickHealthy(String kind, boolean deferrable, Runnable action) {
+        DeferredSave waiting = deferredSaves.get(kind);
+        if (waiting != null) {
+            deferredSaves.put(kind, new DeferredSave(action, deferrable, waiting.sinceMillis()));
+            backupLogger.info("BACKUP", "A " + kind + " save is already waiting for tick health, coalesced.");
+            return;
+        }
+        if (!Config.isTpsAwareEnabled() || tickHealthMonitor == null || isTickHealthy(deferrable)) {
+            action.run();
+            return;
+        }
+
+        DeferredSave deferred = new DeferredSave(action, deferrable, System.currentTimeMillis());
+        backupLogger.info("BACKUP", "Server is lagging (" + tickHealthMonitor.describe() + "), delaying save"
+                + (deferrable ? " for up to " + deferred.maxWaitMillis() + "ms." : " until the lag spike settles."));
+        if (deferrable) {
+            OpenSocketQuerier.query(QUERIER_APP_ID, QUERIER_SOCKET_ID,
+                    "DELAY_BACKUP " + Config.getMaxBackupDeferralSeconds());
+        }
+        deferredSaves.put(kind, deferred);
+        if (deferredSaveTask == null) {
+            deferredSaveTask = scheduler.runGlobalTimer(this::runDeferredSaves, 1L, 1L);
+        }
+    }
+
+    private void runDeferredSaves() {
+        long now = System.currentTimeMillis();
+        List<DeferredSave> ready = new ArrayList<>();
+        deferredSaves.values().removeIf(save -> {
+            if (isTickHealthy(save.deferrable()) || now - save.sinceMillis() >= save.maxWaitMillis()) {
+                ready.add(save);
+                return true;
+            }
+            return false;
+        });
+        if (deferredSaves.isEmpty() && deferredSaveTask != null) {
+            deferredSaveTask.cancel();
+            deferredSaveTask = null;
+        }
+        for (DeferredSave save : ready) {
+            long waited = now - save.sinceMillis();
+            backupLogger.info("BACKUP", "Running deferred save after " + waited + "ms ("
+                    + (waited < save.maxWaitMillis() ? "tick health recovered" : "maximum deferral reached") + ", "
+                    + tickHealthMonitor.describe() + ").");
+            save.action().run();
+        }
+    }
+
+    private boolean isTickHealthy(boolean deferrable) {
+        return !tickHealthMonitor.isSpiking() && !(deferrable && tickHealthMonitor.isLagging());
+    }
+
     private void handlePreHotRestore(Map<String, String> eventData) {
         backupLogger.info("RESTORE", "Received pre_hot_restore event: " + eventData);
 
-        Bukkit.getScheduler().runTask(this, () -> {
+        scheduler.runGlobal(() -> {
             RestoreTask task = RestoreTask.getCurrentTask();
-            if (task != null && task.getPhase() == RestoreTask.Phase.EXECUTING && !task.isRemote()) {
+            if (task != null && task.getPhase() == HotRestoreState.Phase.EXECUTING && !task.isRemote()) {
                 backupLogger.info("RESTORE", "Local restore acknowledged by backend, proceeding to shutdown.");
+                task.setTargetWorldName(eventData.get("world"));
                 task.performShutdown();
                 return;
             }
 
-            if (task != null && task.getPhase() != RestoreTask.Phase.NONE) {
+            if (task != null && task.getPhase() != HotRestoreState.Phase.IDLE) {
                 backupLogger.warn("RESTORE", "Remote restore overrides local task in phase " + task.getPhase().getDisplayName());
                 task.abort("remote_override");
             }
-            startRemoteRestoreTask();
+            startRemoteRestoreTask(eventData.get("world"));
         });
     }
 
-    private void startRemoteRestoreTask() {
+    private void startRemoteRestoreTask(String targetWorldName) {
         RestoreTask remoteTask = new RestoreTask(this);
+        remoteTask.setTargetWorldName(targetWorldName);
         if (!remoteTask.start()) {
             backupLogger.error("RESTORE", "Failed to start remote restore task, using direct shutdown fallback.");
             directShutdownForRestore();
@@ -341,8 +646,7 @@ public final class MineBackupPlugin extends JavaPlugin {
     }
 
     private void directShutdownForRestore() {
-        HotRestoreState.isRestoring = true;
-        HotRestoreState.waitingForServerStopAck = true;
+        HotRestoreState.transition(HotRestoreState.Phase.EXECUTING, "fallback restore shutdown");
         languageManager.broadcastMessage("minebackup.restore.executing");
 
         LocalSaveCoordinator.SaveResult saveResult =
@@ -352,51 +656,92 @@ public final class MineBackupPlugin extends JavaPlugin {
         }
 
         for (Player player : Bukkit.getOnlinePlayers()) {
-            try {
-                player.kickPlayer(languageManager.getTranslation(player, "minebackup.restore.kick"));
-            } catch (Exception ignored) {
-            }
+            scheduler.executeAtEntity(player, () -> {
+                try {
+                    player.kickPlayer(languageManager.getTranslation(player, "minebackup.restore.kick"));
+                } catch (Exception ignored) {
+                }
+            });
         }
 
         String response = OpenSocketQuerier.queryBlocking(
                 QUERIER_APP_ID, QUERIER_SOCKET_ID, "WORLD_SAVE_AND_EXIT_COMPLETE", 500, 1000);
         backupLogger.info("RESTORE", "Fallback shutdown sent WORLD_SAVE_AND_EXIT_COMPLETE: " + response);
+        RestoreTimeline.mark(getDataFolder().toPath(), RestoreTimeline.ACK);
 
+        HotRestoreState.transition(HotRestoreState.Phase.EXECUTING, HotRestoreState.Phase.RESTARTING,
+                "server stopping for fallback restore");
         ServerRestartManager.prepareRestart(this);
         Bukkit.shutdown();
     }
 
+    private void handleRestorePrepareEvent(String eventType, Map<String, String> eventData) {
+        scheduler.runGlobal(() -> {
+            RestoreTask task = RestoreTask.getCurrentTask();
+            if (task == null) {
+                return;
+            }
+            if ("restore_prepare_progress".equals(eventType)) {
+                task.onPrepareProgress(parseInt(eventData.getOrDefault("percent", eventData.get("progress")), 0));
+            } else {
+                String status = eventData.getOrDefault("status", "success");
+                task.onPrepared("success".equalsIgnoreCase(status), eventData.getOrDefault("error", status));
+            }
+        });
+    }
+
     private void handleRestoreFinished(Map<String, String> eventData, String eventType) {
         String status = "restore_success".equals(eventType)
                 ? "success"
                 : eventData.getOrDefault("status", "success");
 
         backupLogger.info("RESTORE", "Restore finished event: type=" + eventType + ", status=" + status);
+        RestoreTimeline.mark(getDataFolder().toPath(), RestoreTimeline.RESTORE_FINISHED);
+        WorldScopedRestore worldRestore = WorldScopedRestore.getActive();
+        if (worldRestore != null) {
+            boolean restored = "success".equalsIgnoreCase(status);
+            scheduler.runGlobal(() -> worldRestore.finish(restored));
+            return;
+        }
         if (!"success".equalsIgnoreCase(status)) {
-            HotRestoreState.reset();
-            finishRelaySession("restore finished with non-success status");
-            restoreWorldAutoSave();
+            scheduler.runGlobal(() -> {
+                HotRestoreState.reset("restore finished: " + status);
+                finishRelaySession("restore finished with non-success status");
+                hotBackupSession.release("restore finished");
+            });
             return;
         }
 
-        Bukkit.getScheduler().runTask(this, () -> {
+        scheduler.runGlobal(() -> {
             languageManager.broadcastMessage("minebackup.restore.success");
-            HotRestoreState.isRestoring = false;
-            HotRestoreState.waitingForServerStopAck = false;
-            restoreWorldAutoSave();
+            HotRestoreState.reset("restore finished: success");
+            hotBackupSession.release("restore finished");
         });
     }
 
     private void handleRejoinWorld(Map<String, String> eventData) {
         backupLogger.info("RESTORE", "Received rejoin_world event: " + eventData);
-        Bukkit.getScheduler().runTask(this, () -> {
-            HotRestoreState.reset();
+        closeRestoreTimeline(RestoreTimeline.REJOIN_WORLD);
+        WorldScopedRestore worldRestore = WorldScopedRestore.getActive();
+        if (worldRestore != null) {
+            scheduler.runGlobal(() -> worldRestore.finish(true));
+            return;
+        }
+        scheduler.runGlobal(() -> {
+            HotRestoreState.reset("rejoin_world received");
             languageManager.broadcastMessage("minebackup.restore.rejoin_ready");
-            restoreWorldAutoSave();
+            hotBackupSession.release("rejoin_world received");
             finishRelaySession("rejoin_world received");
         });
     }
 
+    void closeRestoreTimeline(String milestone) {
+        String summary = RestoreTimeline.close(getDataFolder().toPath(), milestone);
+        if (summary != null) {
+            backupLogger.info("RESTORE", "Restore timeline: " + summary);
+        }
+    }
+
     private void handleInternalEvent(String eventType, Map<String, String> eventData) {
         if (Config.isDebug()) {
             backupLogger.debug("EVENT", "Ignoring internal event " + eventType + " with data=" + eventData);
@@ -404,68 +749,17 @@ public final class MineBackupPlugin extends JavaPlugin {
     }
 
     private void handleBackupCompletionEvent(String eventType, Map<String, String> eventData) {
-        restoreWorldAutoSave();
-        backupLogger.info("BACKUP", "Hot backup cycle finished with event " + eventType);
-    }
-
-    private void freezeWorldAutoSave() {
-        Runnable action = () -> {
-            if (!worldAutoSaveStates.isEmpty()) {
-                autoSaveFreezeTimestampMillis = System.currentTimeMillis();
-                backupLogger.warn("BACKUP", "Auto-save was already frozen. Refreshed freeze watchdog timestamp.");
-                return;
+        hotBackupSession.release(eventType);
+        if ("backup_success".equals(eventType)) {
+            if (changedFileManifest != null) {
+                changedFileManifest.commitBackup();
             }
-
-            for (World world : Bukkit.getWorlds()) {
-                String worldName = world.getName();
-                worldAutoSaveStates.putIfAbsent(worldName, world.isAutoSave());
-                if (world.isAutoSave()) {
-                    world.setAutoSave(false);
-                    backupLogger.info("BACKUP", "Disabled auto-save for world '" + worldName + "' during hot backup.");
-                }
+            if (chunkChangeJournal != null && hotBackupCutoffMillis > 0L) {
+                chunkChangeJournal.markBackup(hotBackupCutoffMillis, eventData.get("file"));
+                hotBackupCutoffMillis = 0L;
             }
-            autoSaveFreezeTimestampMillis = System.currentTimeMillis();
-        };
-        if (Bukkit.isPrimaryThread()) {
-            action.run();
-        } else {
-            Bukkit.getScheduler().runTask(this, action);
         }
-    }
-
-    private void restoreWorldAutoSave() {
-        Runnable action = () -> {
-            for (World world : Bukkit.getWorlds()) {
-                Boolean previousState = worldAutoSaveStates.remove(world.getName());
-                if (previousState != null) {
-                    world.setAutoSave(previousState);
-                    backupLogger.info("BACKUP", "Restored auto-save for world '" + world.getName()
-                            + "' to " + previousState + ".");
-                }
-            }
-            autoSaveFreezeTimestampMillis = 0L;
-        };
-        if (Bukkit.isPrimaryThread()) {
-            action.run();
-        } else if (isEnabled()) {
-            Bukkit.getScheduler().runTask(this, action);
-        }
-    }
-
-    private void checkAutoSaveFreezeTimeout() {
-        if (worldAutoSaveStates.isEmpty() || autoSaveFreezeTimestampMillis <= 0L) {
-            return;
-        }
-
-        long timeoutMillis = Math.max(1, Config.getBackupFreezeTimeoutSeconds()) * 1000L;
-        long elapsed = System.currentTimeMillis() - autoSaveFreezeTimestampMillis;
-        if (elapsed < timeoutMillis) {
-            return;
-        }
-
-        backupLogger.warn("BACKUP", "Auto-save freeze timed out after " + elapsed
-                + "ms. Restoring auto-save states now.");
-        restoreWorldAutoSave();
+        backupLogger.info("BACKUP", "Hot backup cycle finished with event " + eventType);
     }
 
     private void broadcastEvent(String eventType, Map<String, String> eventData) {
@@ -563,4 +857,23 @@ public final class MineBackupPlugin extends JavaPlugin {
         }
         return result;
     }
+
+    private static int parseInt(String value, int fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return (int) Math.round(Double.parseDouble(value.trim()));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private record DeferredSave(Runnable action, boolean deferrable, long sinceMillis) {
+        long maxWaitMillis() {
+            return deferrable
+                    ? Math.max(0, Config.getMaxBackupDeferralSeconds()) * 1000L
+                    : SPIKE_SETTLE_MAX_WAIT_MILLIS;
+        }
+    }
 }
@@ -0,0 +1,216 @@
+package org.leafuke.mineBackupPlugin;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.entity.EntityPotionEffectEvent;
+import org.bukkit.event.entity.EntityRegainHealthEvent;
+import org.bukkit.event.entity.FoodLevelChangeEvent;
+import org.bukkit.event.entity.ProjectileLaunchEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.player.PlayerAdvancementDoneEvent;
+import org.bukkit.event.player.PlayerBucketEmptyEvent;
+import org.bukkit.event.player.PlayerBucketFillEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerExpChangeEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerItemConsumeEvent;
+import org.bukkit.event.player.PlayerItemDamageEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerStatisticIncrementEvent;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks which online players changed since their playerdata was last flushed,
+ * so the dirty-only save plan can skip players whose file would be rewritten unchanged.
+ * Events cannot cover every change to playerdata, so a player not flushed for
+ * {@code save.dirty-only-max-skip-seconds} counts as dirty regardless.
+ */
+public final class PlayerDirtyTracker implements Listener {
+    private final Set<UUID> dirtyPlayers = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Long> flushedAtMillis = new ConcurrentHashMap<>();
+    private final LongSupplier maxSkipMillis;
+    private final LongSupplier clock;
+    private volatile long allFlushedAtMillis;
+
+    public PlayerDirtyTracker() {
+        this(() -> Config.getDirtyOnlyMaxSkipSeconds() * 1000L, System::currentTimeMillis);
+    }
+
+    PlayerDirtyTracker(LongSupplier maxSkipMillis, LongSupplier clock) {
+        this.maxSkipMillis = maxSkipMillis;
+        this.clock = clock;
+        this.allFlushedAtMillis = clock.getAsLong();
+    }
+
+    public boolean isDirty(Player player) {
+        UUID playerId = player.getUniqueId();
+        if (dirtyPlayers.contains(playerId)) {
+            return true;
+        }
+        long maxSkip = maxSkipMillis.getAsLong();
+        long flushedAt = Math.max(allFlushedAtMillis, flushedAtMillis.getOrDefault(playerId, 0L));
+        return maxSkip > 0L && clock.getAsLong() - flushedAt >= maxSkip;
+    }
+
+    public int getDirtyCount() {
+        return dirtyPlayers.size();
+    }
+
+    public void markFlushed(Player player) {
+        dirtyPlayers.remove(player.getUniqueId());
+        flushedAtMillis.put(player.getUniqueId(), clock.getAsLong());
+    }
+
+    public void markAllFlushed() {
+        dirtyPlayers.clear();
+        allFlushedAtMillis = clock.getAsLong();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        mark(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        // The server writes playerdata itself on disconnect.
+        dirtyPlayers.remove(event.getPlayer().getUniqueId());
+        flushedAtMillis.remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMove(PlayerMoveEvent event) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        if (to == null || from.getBlockX() != to.getBlockX() || from.getBlockY() != to.getBlockY()
+                || from.getBlockZ() != to.getBlockZ() || from.getWorld() != to.getWorld()) {
+            mark(event.getPlayer());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChangedWorld(PlayerChangedWorldEvent event) {
+        mark(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRespawn(PlayerRespawnEvent event) {
+        mark(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryClose(InventoryCloseEvent event) {
+        mark(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDrop(PlayerDropItemEvent event) {
+        mark(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPickup(EntityPickupItemEvent event) {
+        mark(event.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onConsume(PlayerItemConsumeEvent event) {
+        mark(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onExpChange(PlayerExpChangeEvent event) {
+        mark(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDamage(EntityDamageEvent event) {
+        mark(event.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onRegainHealth(EntityRegainHealthEvent event) {
+        mark(event.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFoodLevelChange(FoodLevelChangeEvent event) {
+        mark(event.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        mark(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        mark(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onItemDamage(PlayerItemDamageEvent event) {
+        mark(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketEmpty(PlayerBucketEmptyEvent event) {
+        mark(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketFill(PlayerBucketFillEvent event) {
+        mark(event.getPlayer());
+    }
+
+    // Not ignoreCancelled: interacting with air arrives cancelled even when the item in hand is used.
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInteract(PlayerInteractEvent event) {
+        mark(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onProjectileLaunch(ProjectileLaunchEvent event) {
+        if (event.getEntity().getShooter() instanceof Player player) {
+            mark(player);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPotionEffect(EntityPotionEffectEvent event) {
+        mark(event.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAdvancementDone(PlayerAdvancementDoneEvent event) {
+        mark(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onStatisticIncrement(PlayerStatisticIncrementEvent event) {
+        mark(event.getPlayer());
+    }
+
+    private void mark(Entity entity) {
+        if (entity instanceof Player player) {
+            dirtyPlayers.add(player.getUniqueId());
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package org.leafuke.mineBackupPlugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.leafuke.mineBackupPlugin.scheduler.TaskHandle;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Predicts when the next scheduled auto backup will ask for {@code pre_hot_backup}, which
+ * also tells scheduled backups apart from manual ones, and, if pre-flush is enabled,
+ * flushes dirty players and worlds ahead of it, so the real pre-backup save has little left
+ * to write. Player saves are batched under a per-tick budget; a world save cannot be split,
+ * so each one gets a tick of its own and the budget only decides when the next slice runs.
+ */
+public final class PreFlushScheduler {
+    private static final long CHECK_PERIOD_TICKS = 20L;
+
+    private final MineBackupPlugin plugin;
+    private final BackupLogger logger;
+
+    private TaskHandle checkTask;
+    private TaskHandle flushTask;
+    private final Deque<Player> pendingPlayers = new ArrayDeque<>();
+    private final Deque<World> pendingWorlds = new ArrayDeque<>();
+
+    private long anchorMillis;
+    private long predictedBackupMillis;
+    private long flushStartedMillis;
+    private long flushFinishedMillis;
+    private int flushedPlayers;
+    private int flushedWorlds;
+
+    public PreFlushScheduler(MineBackupPlugin plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getBackupLogger();
+    }
+
+    public void start() {
+        stop();
+        reanchor(System.currentTimeMillis());
+        checkTask = plugin.getPluginScheduler().runGlobalTimer(this::checkWindow, CHECK_PERIOD_TICKS, CHECK_PERIOD_TICKS);
+    }
+
+    public void stop() {
+        cancelFlush();
+        if (checkTask != null) {
+            checkTask.cancel();
+            checkTask = null;
+        }
+    }
+
+    /**
+     * Called whenever the auto backup schedule is (re)sent to the backend; the backend starts
+     * counting its interval from that moment.
+     */
+    public void onAutoBackupScheduled() {
+        cancelFlush();
+        reanchor(System.currentTimeMillis());
+    }
+
+    /**
+     * Called on the main thread when {@code pre_hot_backup} arrives. Logs how far the prediction
+     * was off and re-anchors the next prediction on the actual arrival.
+     */
+    public void onHotBackupArrived() {
+        long now = System.currentTimeMillis();
+        if (predictedBackupMillis > 0L) {
+            String flushState;
+            if (flushFinishedMillis > 0L) {
+                flushState = "finished " + (now - flushFinishedMillis) + "ms earlier after "
+                        + (flushFinishedMillis - flushStartedMillis) + "ms (players=" + flushedPlayers
+                        + ", worlds=" + flushedWorlds + ")";
+            } else if (flushStartedMillis > 0L) {
+                flushState = "still running (players=" + flushedPlayers + ", worlds=" + flushedWorlds + ")";
+            } else {
+                flushState = "not started";
+            }
+            logger.info("PRE_FLUSH", "Hot backup arrived: predicted=" + predictedBackupMillis
+                    + ", actual=" + now + ", drift=" + formatDrift(now - predictedBackupMillis)
+                    + ", preFlush " + flushState + ".");
+        }
+
+        cancelFlush();
+        reanchor(now);
+    }
+
+    /**
+     * Whether a hot backup arriving now matches the predicted auto backup schedule, as opposed to
+     * a manual or remote backup someone is actively waiting for.
+     */
+    public boolean isScheduledBackupDue(long nowMillis) {
+        if (predictedBackupMillis <= 0L) {
+            return false;
+        }
+        long toleranceMillis = Math.max(Config.getPreFlushLeadSeconds() * 1000L, Config.getInternalTime() * 100L);
+        return Math.abs(nowMillis - predictedBackupMillis) <= toleranceMillis;
+    }
+
+    private void reanchor(long nowMillis) {
+        anchorMillis = nowMillis;
+        flushStartedMillis = 0L;
+        flushFinishedMillis = 0L;
+        flushedPlayers = 0;
+        flushedWorlds = 0;
+        predictedBackupMillis = Config.hasAutoBackup() && Config.getInternalTime() > 0
+                ? anchorMillis + Config.getInternalTime() * 1000L
+                : 0L;
+    }
+
+    private void checkWindow() {
+        if (predictedBackupMillis <= 0L) {
+            // Config may have been reloaded or the auto backup set since the last anchor.
+            reanchor(anchorMillis);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now > predictedBackupMillis + Config.getInternalTime() * 1000L) {
+            // Missed at least one whole cycle (backend offline?): predict the next one instead.
+            logger.debug("PRE_FLUSH", "Predicted hot backup at " + predictedBackupMillis + " never arrived, re-anchoring.");
+            reanchor(now);
+            return;
+        }
+        if (!Config.isPreFlushEnabled() || flushStartedMillis > 0L || plugin.isAutoSaveFrozen()
+                || HotRestoreState.isRestoring()) {
+            return;
+        }
+
+        long leadMillis = Math.max(1, Config.getPreFlushLeadSeconds()) * 1000L;
+        if (now < predictedBackupMillis - leadMillis) {
+            return;
+        }
+
+        beginFlush(now);
+    }
+
+    private void beginFlush(long now) {
+        PlayerDirtyTracker dirtyTracker = plugin.getPlayerDirtyTracker();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            if (dirtyTracker == null || dirtyTracker.isDirty(player)) {
+                pendingPlayers.add(player);
+            }
+        }
+        for (World world : Bukkit.getWorlds()) {
+            pendingWorlds.add(world);
+        }
+
+        flushStartedMillis = now;
+        logger.info("PRE_FLUSH", "Starting pre-flush " + (predictedBackupMillis - now) + "ms before the predicted hot backup ("
+                + pendingPlayers.size() + " player(s), " + pendingWorlds.size() + " world(s), player budget "
+                + Config.getPreFlushMaxMillisPerTick() + "ms/tick).");
+        flushTask = plugin.getPluginScheduler().runGlobalTimer(this::runSlices, 1L, 1L);
+    }
+
+    private void runSlices() {
+        if (plugin.isAutoSaveFrozen() || HotRestoreState.isRestoring()) {
+            logger.debug("PRE_FLUSH", "Backup or restore started, abandoning pre-flush.");
+            cancelFlush();
+            return;
+        }
+
+        TickHealthMonitor tickHealth = plugin.getTickHealthMonitor();
+        long budgetNanos = Math.max(1, Config.getPreFlushMaxMillisPerTick()) * 1_000_000L;
+        if (tickHealth != null && Config.isTpsAwareEnabled()) {
+            if (tickHealth.isSpiking()) {
+                return;
+            }
+            budgetNanos = tickHealth.scaleBudgetNanos(budgetNanos);
+        }
+        if (!pendingPlayers.isEmpty()) {
+            long sliceStart = System.nanoTime();
+            do {
+                Player player = pendingPlayers.poll();
+                if (player == null) {
+                    break;
+                }
+                flushPlayer(player);
+            } while (System.nanoTime() - sliceStart < budgetNanos);
+        } else {
+            World world = pendingWorlds.poll();
+            if (world != null) {
+                flushWorld(world);
+            }
+        }
+
+        if (pendingPlayers.isEmpty() && pendingWorlds.isEmpty()) {
+            flushFinishedMillis = System.currentTimeMillis();
+            logger.info("PRE_FLUSH", "Pre-flush finished in " + (flushFinishedMillis - flushStartedMillis)
+                    + "ms (players=" + flushedPlayers + ", worlds=" + flushedWorlds + ").");
+            stopFlushTask();
+        }
+    }
+
+    private void flushPlayer(Player player) {
+        if (!player.isOnline()) {
+            return;
+        }
+        try {
+            player.saveData();
+            flushedPlayers++;
+            if (plugin.getPlayerDirtyTracker() != null) {
+                plugin.getPlayerDirtyTracker().markFlushed(player);
+            }
+        } catch (Exception e) {
+            logger.warn("PRE_FLUSH", "Failed to pre-flush player '" + player.getName() + "': " + e.getMessage());
+        }
+    }
+
+    private void flushWorld(World world) {
+        if (Bukkit.getWorld(world.getName()) == null) {
+            return;
+        }
+        try {
+            world.save();
+            flushedWorlds++;
+        } catch (Exception e) {
+            logger.warn("PRE_FLUSH", "Failed to pre-flush world '" + world.getName() + "': " + e.getMessage());
+        }
+    }
+
+    private void cancelFlush() {
+        pendingPlayers.clear();
+        pendingWorlds.clear();
+        stopFlushTask();
+    }
+
+    private void stopFlushTask() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+    }
+
+    private static String formatDrift(long driftMillis) {
+        return (driftMillis >= 0 ? "+" : "") + driftMillis + "ms";
+    }
+}
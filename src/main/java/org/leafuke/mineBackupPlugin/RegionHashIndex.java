@@ -0,0 +1,347 @@
+package org.leafuke.mineBackupPlugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Content hashes of the files tracked by {@link ChangedFileManifest}, for hosts where mtime moves without the
+ * content changing (restores, copies, sync tools).
+ * <p>
+ * Region files are memory-mapped and hashed per chunk slot with XXH64: the 8 KiB header plus each slot's
+ * stored payload, ignoring sector padding. Other files are hashed as a whole. A file is only rehashed when its
+ * size or mtime moved since it was last indexed, hashing runs on a small pool and all reads share an I/O budget
+ * so it never competes with the server's own chunk I/O. The index is persisted to {@value #FILE_NAME}.
+ */
+public final class RegionHashIndex {
+    public static final String FILE_NAME = "region-hashes.bin";
+    private static final int MAGIC = 0x4D424849;
+    private static final int VERSION = 1;
+    private static final int SECTOR_BYTES = 4096;
+    private static final int HEADER_BYTES = SECTOR_BYTES * 2;
+    private static final int CHUNK_SLOTS = 1024;
+    private static final long[] NO_SLOTS = new long[0];
+    private static final boolean MAP_FILES =
+            !System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows");
+
+    private final BackupLogger logger;
+    private final Path indexFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /** key -> file hash as of the last successful backup. */
+    private final Map<String, Long> committedHashes = new HashMap<>();
+    private Map<String, Long> pendingCommit;
+    private boolean loaded;
+
+    public RegionHashIndex(BackupLogger logger, Path dataFolder) {
+        this.logger = logger;
+        this.indexFile = dataFolder.resolve(FILE_NAME);
+    }
+
+    /**
+     * Rehashes every tracked file whose size or mtime moved and drops entries for files that are gone.
+     * Blocks until done; call off the main thread.
+     */
+    public synchronized RefreshResult refresh(List<Path> worldFolders) {
+        long start = System.currentTimeMillis();
+        ensureLoaded();
+
+        Set<String> seen = new HashSet<>();
+        List<Candidate> stale = new ArrayList<>();
+        for (Path worldFolder : worldFolders) {
+            try {
+                ChangedFileManifest.forEachTrackedFile(worldFolder, (key, file, attributes) -> {
+                    seen.add(key);
+                    long size = attributes.size();
+                    long mtime = attributes.lastModifiedTime().toMillis();
+                    Entry current = entries.get(key);
+                    if (current == null || current.size != size || current.mtime != mtime) {
+                        stale.add(new Candidate(key, file, size, mtime, current));
+                    }
+                });
+            } catch (IOException e) {
+                logger.warn("HASH", "Failed to list " + worldFolder + ": " + e.getMessage());
+            }
+        }
+        Set<String> worldPrefixes = new HashSet<>();
+        for (Path worldFolder : worldFolders) {
+            worldPrefixes.add(worldFolder.getFileName() + "/");
+        }
+        entries.keySet().removeIf(key -> !seen.contains(key)
+                && worldPrefixes.contains(key.substring(0, key.indexOf('/') + 1)));
+
+        IoBudget budget = new IoBudget(Config.getContentHashIoBudgetMbPerSecond() * 1024L * 1024L);
+        AtomicLong hashedBytes = new AtomicLong();
+        AtomicInteger changedFiles = new AtomicInteger();
+        AtomicInteger changedSlots = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Config.getContentHashThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "MineBackup-RegionHash");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        try {
+            List<Future<?>> pending = new ArrayList<>();
+            for (Candidate candidate : stale) {
+                pending.add(pool.submit(() -> {
+                    try {
+                        Entry hashed = hash(candidate, budget);
+                        entries.put(candidate.key(), hashed);
+                        hashedBytes.addAndGet(candidate.size());
+                        if (candidate.previous() == null || candidate.previous().fileHash != hashed.fileHash) {
+                            changedFiles.incrementAndGet();
+                            changedSlots.addAndGet(countChangedSlots(candidate.previous(), hashed));
+                        }
+                    } catch (IOException e) {
+                        // Keep the old entry (or none); the next refresh retries.
+                        logger.warn("HASH", "Failed to hash " + candidate.file() + ": " + e.getMessage());
+                    }
+                }));
+            }
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } catch (Exception e) {
+            logger.warn("HASH", "Region hashing interrupted: " + e.getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Map<String, Long> snapshot = new HashMap<>();
+        entries.forEach((key, entry) -> snapshot.put(key, entry.fileHash));
+        pendingCommit = snapshot;
+        save();
+
+        RefreshResult result = new RefreshResult(entries.size(), stale.size(), hashedBytes.get(), changedFiles.get(),
+                changedSlots.get(), System.currentTimeMillis() - start);
+        logger.info("HASH", result.toLogMessage());
+        return result;
+    }
+
+    /**
+     * Whether the file's content is the same as when the last successful backup was prepared. Unknown files
+     * count as changed.
+     */
+    public synchronized boolean isUnchangedSinceCommit(String key) {
+        Entry current = entries.get(key);
+        Long committed = committedHashes.get(key);
+        return current != null && committed != null && committed == current.fileHash;
+    }
+
+    /** The backup prepared by the last {@link #refresh} succeeded. */
+    public synchronized void commit() {
+        if (pendingCommit == null) {
+            return;
+        }
+        committedHashes.clear();
+        committedHashes.putAll(pendingCommit);
+        pendingCommit = null;
+        save();
+    }
+
+    private static Entry hash(Candidate candidate, IoBudget budget) throws IOException {
+        try (FileChannel channel = FileChannel.open(candidate.file(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("file too large to hash: " + size + " bytes");
+            }
+            boolean regionFile = candidate.key().endsWith(".mca") && size >= HEADER_BYTES;
+            // Mapped pages are only read when touched, so region files are charged slot by slot.
+            budget.acquire(regionFile && MAP_FILES ? HEADER_BYTES : size);
+            ByteBuffer data = load(channel, (int) size);
+            if (!regionFile) {
+                long fileHash = XxHash64.hash(data, 0, (int) size, 0L);
+                return new Entry(candidate.size(), candidate.mtime(), fileHash, NO_SLOTS);
+            }
+
+            long[] slots = new long[CHUNK_SLOTS];
+            long fileHash = XxHash64.hash(data, 0, HEADER_BYTES, 0L);
+            for (int slot = 0; slot < CHUNK_SLOTS; slot++) {
+                int location = data.getInt(slot * 4);
+                int sectorOffset = location >>> 8;
+                int sectorCount = location & 0xFF;
+                if (sectorOffset < 2 || sectorCount == 0) {
+                    continue;
+                }
+                long chunkStart = (long) sectorOffset * SECTOR_BYTES;
+                if (chunkStart + 5 > size) {
+                    continue;
+                }
+                // Payload is a 4-byte length, a compression byte and the data; the rest of the last sector is padding.
+                long payloadLength = (data.getInt((int) chunkStart) & 0xFFFFFFFFL) + 4L;
+                long available = Math.min((long) sectorCount * SECTOR_BYTES, size - chunkStart);
+                int length = (int) Math.min(payloadLength, available);
+                if (MAP_FILES) {
+                    budget.acquire(length);
+                }
+                slots[slot] = XxHash64.hash(data, (int) chunkStart, length, slot);
+                fileHash = fileHash * 31L + slots[slot];
+            }
+            return new Entry(candidate.size(), candidate.mtime(), fileHash, slots);
+        }
+    }
+
+    private static ByteBuffer load(FileChannel channel, int size) throws IOException {
+        if (MAP_FILES) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+        }
+        // Windows keeps mapped files locked until the mapping is collected, which would block the server's writes.
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int countChangedSlots(Entry previous, Entry current) {
+        if (current.slots.length == 0) {
+            return 0;
+        }
+        if (previous == null || previous.slots.length != current.slots.length) {
+            int used = 0;
+            for (long slot : current.slots) {
+                if (slot != 0L) {
+                    used++;
+                }
+            }
+            return used;
+        }
+        int changed = 0;
+        for (int i = 0; i < current.slots.length; i++) {
+            if (previous.slots[i] != current.slots[i]) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!Files.isRegularFile(indexFile)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.warn("HASH", FILE_NAME + " has an unknown format, rebuilding the index.");
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long size = in.readLong();
+                long mtime = in.readLong();
+                long fileHash = in.readLong();
+                boolean hasCommitted = in.readBoolean();
+                long committedHash = in.readLong();
+                long[] slots = new long[in.readUnsignedShort()];
+                for (int slot = 0; slot < slots.length; slot++) {
+                    slots[slot] = in.readLong();
+                }
+                entries.put(key, new Entry(size, mtime, fileHash, slots.length == 0 ? NO_SLOTS : slots));
+                if (hasCommitted) {
+                    committedHashes.put(key, committedHash);
+                }
+            }
+            logger.info("HASH", "Loaded content hashes for " + entries.size() + " file(s).");
+        } catch (IOException e) {
+            logger.warn("HASH", "Failed to read " + FILE_NAME + ", rebuilding the index: " + e.getMessage());
+            entries.clear();
+            committedHashes.clear();
+        }
+    }
+
+    private void save() {
+        Path temp = indexFile.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            Files.createDirectories(indexFile.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> item : entries.entrySet()) {
+                    Entry entry = item.getValue();
+                    Long committed = committedHashes.get(item.getKey());
+                    out.writeUTF(item.getKey());
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.mtime);
+                    out.writeLong(entry.fileHash);
+                    out.writeBoolean(committed != null);
+                    out.writeLong(committed != null ? committed : 0L);
+                    out.writeShort(entry.slots.length);
+                    for (long slot : entry.slots) {
+                        out.writeLong(slot);
+                    }
+                }
+            }
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("HASH", "Failed to write " + FILE_NAME + ": " + e.getMessage());
+        }
+    }
+
+    private record Candidate(String key, Path file, long size, long mtime, Entry previous) {
+    }
+
+    private record Entry(long size, long mtime, long fileHash, long[] slots) {
+    }
+
+    /** Shared read budget: callers block until their bytes fit into the configured rate. */
+    private static final class IoBudget {
+        private final long bytesPerSecond;
+        private long nextFreeNanos = System.nanoTime();
+
+        private IoBudget(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        private void acquire(long bytes) {
+            if (bytesPerSecond <= 0L) {
+                return;
+            }
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long startNanos = Math.max(now, nextFreeNanos);
+                nextFreeNanos = startNanos + bytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+                waitNanos = startNanos - now;
+            }
+            if (waitNanos > 0L) {
+                LockSupport.parkNanos(waitNanos);
+            }
+        }
+    }
+
+    public record RefreshResult(int indexedFiles, int hashedFiles, long hashedBytes, int changedFiles,
+                                int changedSlots, long elapsedMillis) {
+        public String toLogMessage() {
+            return String.format(Locale.ROOT,
+                    "Content index refreshed in %dms: %d file(s) indexed, %d rehashed (%.1fMB), %d changed (%d chunk slot(s)).",
+                    elapsedMillis, indexedFiles, hashedFiles, hashedBytes / 1_048_576.0D, changedFiles, changedSlots);
+        }
+    }
+}
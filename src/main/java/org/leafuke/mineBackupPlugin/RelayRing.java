@@ -0,0 +1,318 @@
+package org.leafuke.mineBackupPlugin;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped file shared by the server, the sidecar and the restarted server, holding the relay session,
+ * the sidecar's ready marker and a single-producer/single-consumer ring of relayed events. The sidecar is the
+ * only producer and the plugin the only consumer; both cursors live in the file, so either side can restart and
+ * carry on where it stopped. Polling touches only mapped memory, no system calls.
+ *
+ * <p>Records are {@code int length | int crc32 | long sequence | long receivedAt | UTF-8 payload}, with length
+ * and CRC covering everything after the CRC, and wrap around the end of the ring byte by byte.
+ */
+public final class RelayRing implements AutoCloseable {
+    public enum FsyncPolicy {
+        /** Force the mapping to disk after every append. */
+        ALWAYS,
+        /** Force at most once per interval; a crash can lose the last interval. */
+        INTERVAL,
+        /** Leave it to the OS. */
+        NEVER;
+
+        public static FsyncPolicy parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException ignored) {
+                return ALWAYS;
+            }
+        }
+    }
+
+    private static final int MAGIC = 0x4D425252; // "MBRR"
+    private static final int VERSION = 2;
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_STATE = 8;
+    private static final int OFFSET_CREATED_AT = 16;
+    private static final int OFFSET_RELAY_TIMEOUT = 24;
+    private static final int OFFSET_SESSION_ID = 28;
+    private static final int SESSION_ID_BYTES = 64;
+    private static final int OFFSET_SCRIPT = 96;
+    private static final int SCRIPT_BYTES = 512;
+    private static final int OFFSET_READY_PID = 616;
+    private static final int OFFSET_READY_AT = 624;
+    private static final int OFFSET_COMMITTED = 632;
+    // Each cursor gets its own cache line so producer and consumer do not false-share.
+    private static final int OFFSET_HEAD = 640;
+    private static final int OFFSET_TAIL = 704;
+    private static final int HEADER_BYTES = 1024;
+
+    private static final int DATA_BYTES = 64 * 1024;
+    private static final int DATA_MASK = DATA_BYTES - 1;
+    private static final int FILE_BYTES = HEADER_BYTES + DATA_BYTES;
+
+    private static final int STATE_EMPTY = 0;
+    private static final int STATE_SESSION = 1;
+
+    private static final int RECORD_PREFIX_BYTES = 8;
+    private static final int MIN_BODY_BYTES = 16;
+    private static final long FSYNC_INTERVAL_MILLIS = 1000L;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final MappedByteBuffer mapping;
+    private long lastForceMillis;
+
+    private RelayRing(FileChannel channel, MappedByteBuffer mapping) {
+        this.channel = channel;
+        this.mapping = mapping;
+    }
+
+    /**
+     * Maps the ring in {@code dataDirectory}, creating it if needed. Returns {@code null} when it does not exist
+     * and {@code create} is false.
+     */
+    public static RelayRing open(Path dataDirectory, boolean create) throws IOException {
+        Path ringPath = RestartRelayStore.getRingPath(dataDirectory);
+        if (!create && !Files.exists(ringPath)) {
+            return null;
+        }
+        Files.createDirectories(dataDirectory);
+        FileChannel channel = FileChannel.open(ringPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0L, FILE_BYTES);
+            mapping.order(ByteOrder.nativeOrder());
+            RelayRing ring = new RelayRing(channel, mapping);
+            if (mapping.getInt(OFFSET_MAGIC) != MAGIC || mapping.getInt(OFFSET_VERSION) != VERSION) {
+                ring.format();
+            }
+            return ring;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void format() {
+        for (int i = 0; i < HEADER_BYTES; i += 8) {
+            mapping.putLong(i, 0L);
+        }
+        mapping.putInt(OFFSET_MAGIC, MAGIC);
+        mapping.putInt(OFFSET_VERSION, VERSION);
+        mapping.force();
+    }
+
+    /**
+     * Starts a new session: clears the ready marker and any unread events, then publishes the session fields.
+     * Fails without touching the ring when a session field does not fit its header slot.
+     */
+    public void startSession(RestartRelayStore.Session session) throws IOException {
+        if (!fits(session.id(), SESSION_ID_BYTES) || !fits(session.restartScriptPath(), SCRIPT_BYTES)) {
+            throw new IOException("Relay session does not fit the ring header; the restart script path is limited to "
+                    + (SCRIPT_BYTES - 4) + " UTF-8 bytes");
+        }
+        INTS.setRelease(mapping, OFFSET_STATE, STATE_EMPTY);
+        mapping.putLong(OFFSET_CREATED_AT, session.createdAtMillis());
+        mapping.putInt(OFFSET_RELAY_TIMEOUT, session.relayTimeoutSeconds());
+        putString(OFFSET_SESSION_ID, SESSION_ID_BYTES, session.id());
+        putString(OFFSET_SCRIPT, SCRIPT_BYTES, session.restartScriptPath());
+        mapping.putLong(OFFSET_READY_PID, 0L);
+        LONGS.setRelease(mapping, OFFSET_READY_AT, 0L);
+        INTS.setRelease(mapping, OFFSET_COMMITTED, 0);
+        LONGS.setRelease(mapping, OFFSET_HEAD, 0L);
+        LONGS.setRelease(mapping, OFFSET_TAIL, 0L);
+        INTS.setRelease(mapping, OFFSET_STATE, STATE_SESSION);
+        mapping.force();
+    }
+
+    public RestartRelayStore.Session readSession() {
+        if ((int) INTS.getAcquire(mapping, OFFSET_STATE) != STATE_SESSION) {
+            return null;
+        }
+        return new RestartRelayStore.Session(
+                getString(OFFSET_SESSION_ID, SESSION_ID_BYTES),
+                mapping.getLong(OFFSET_CREATED_AT),
+                mapping.getInt(OFFSET_RELAY_TIMEOUT),
+                getString(OFFSET_SCRIPT, SCRIPT_BYTES)
+        );
+    }
+
+    public void endSession() {
+        INTS.setRelease(mapping, OFFSET_STATE, STATE_EMPTY);
+        mapping.force();
+    }
+
+    /**
+     * Commits the session to a restart, restarting its relay clock at {@code atMillis}. A sidecar launched ahead
+     * of time only relaunches the server once its session is committed. Returns the updated session, or
+     * {@code null} if {@code sessionId} is no longer the current session.
+     */
+    public RestartRelayStore.Session commit(String sessionId, long atMillis) {
+        RestartRelayStore.Session session = readSession();
+        if (session == null || !session.id().equals(sessionId)) {
+            return null;
+        }
+        mapping.putLong(OFFSET_CREATED_AT, atMillis);
+        INTS.setRelease(mapping, OFFSET_COMMITTED, 1);
+        mapping.force();
+        return new RestartRelayStore.Session(session.id(), atMillis, session.relayTimeoutSeconds(),
+                session.restartScriptPath());
+    }
+
+    public boolean isCommitted(String sessionId) {
+        return (int) INTS.getAcquire(mapping, OFFSET_COMMITTED) == 1
+                && (int) INTS.getAcquire(mapping, OFFSET_STATE) == STATE_SESSION
+                && sessionId.equals(getString(OFFSET_SESSION_ID, SESSION_ID_BYTES));
+    }
+
+    public void markReady(String sessionId, long processId) {
+        if (!sessionId.equals(getString(OFFSET_SESSION_ID, SESSION_ID_BYTES))) {
+            return;
+        }
+        mapping.putLong(OFFSET_READY_PID, processId);
+        LONGS.setRelease(mapping, OFFSET_READY_AT, System.currentTimeMillis());
+    }
+
+    public boolean isReady(String sessionId) {
+        return (long) LONGS.getAcquire(mapping, OFFSET_READY_AT) != 0L
+                && sessionId.equals(getString(OFFSET_SESSION_ID, SESSION_ID_BYTES));
+    }
+
+    /**
+     * Appends one event. Returns {@code null} without writing anything when the consumer has fallen so far
+     * behind that the event does not fit; the caller decides whether to drop it.
+     */
+    public RestartRelayStore.RelayEvent append(long sequence, String payload, FsyncPolicy fsyncPolicy) {
+        RestartRelayStore.RelayEvent event = new RestartRelayStore.RelayEvent(
+                sequence, System.currentTimeMillis(), payload);
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = MIN_BODY_BYTES + payloadBytes.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_PREFIX_BYTES + bodyLength);
+        record.putInt(bodyLength).putInt(0).putLong(sequence).putLong(event.receivedAtMillis()).put(payloadBytes);
+        record.putInt(4, crc(record.array(), RECORD_PREFIX_BYTES, bodyLength));
+
+        long head = (long) LONGS.getOpaque(mapping, OFFSET_HEAD);
+        long tail = (long) LONGS.getAcquire(mapping, OFFSET_TAIL);
+        if (record.capacity() > DATA_BYTES - (head - tail)) {
+            return null;
+        }
+        copyIn(head, record.array());
+        LONGS.setRelease(mapping, OFFSET_HEAD, head + record.capacity());
+
+        long now = System.currentTimeMillis();
+        if (fsyncPolicy == FsyncPolicy.ALWAYS
+                || fsyncPolicy == FsyncPolicy.INTERVAL && now - lastForceMillis >= FSYNC_INTERVAL_MILLIS) {
+            mapping.force();
+            lastForceMillis = now;
+        }
+        return event;
+    }
+
+    /**
+     * Consumes every event published since the last call. Records with a bad checksum are skipped; if the framing
+     * itself is damaged, the rest of the ring is dropped.
+     */
+    public List<RestartRelayStore.RelayEvent> poll() {
+        long head = (long) LONGS.getAcquire(mapping, OFFSET_HEAD);
+        long tail = (long) LONGS.getOpaque(mapping, OFFSET_TAIL);
+        if (head == tail) {
+            return List.of();
+        }
+
+        List<RestartRelayStore.RelayEvent> events = new ArrayList<>();
+        byte[] prefix = new byte[RECORD_PREFIX_BYTES];
+        while (tail < head) {
+            copyOut(tail, prefix);
+            ByteBuffer prefixBuffer = ByteBuffer.wrap(prefix);
+            int bodyLength = prefixBuffer.getInt(0);
+            if (bodyLength < MIN_BODY_BYTES || RECORD_PREFIX_BYTES + (long) bodyLength > head - tail) {
+                tail = head;
+                break;
+            }
+            byte[] body = new byte[bodyLength];
+            copyOut(tail + RECORD_PREFIX_BYTES, body);
+            tail += RECORD_PREFIX_BYTES + bodyLength;
+            if (crc(body, 0, bodyLength) != prefixBuffer.getInt(4)) {
+                continue;
+            }
+            ByteBuffer bodyBuffer = ByteBuffer.wrap(body);
+            events.add(new RestartRelayStore.RelayEvent(
+                    bodyBuffer.getLong(0),
+                    bodyBuffer.getLong(8),
+                    new String(body, MIN_BODY_BYTES, bodyLength - MIN_BODY_BYTES, StandardCharsets.UTF_8)));
+        }
+        LONGS.setRelease(mapping, OFFSET_TAIL, tail);
+        return events;
+    }
+
+    private void copyIn(long position, byte[] source) {
+        int index = (int) (position & DATA_MASK);
+        int first = Math.min(source.length, DATA_BYTES - index);
+        mapping.put(HEADER_BYTES + index, source, 0, first);
+        if (first < source.length) {
+            mapping.put(HEADER_BYTES, source, first, source.length - first);
+        }
+    }
+
+    private void copyOut(long position, byte[] target) {
+        int index = (int) (position & DATA_MASK);
+        int first = Math.min(target.length, DATA_BYTES - index);
+        mapping.get(HEADER_BYTES + index, target, 0, first);
+        if (first < target.length) {
+            mapping.get(HEADER_BYTES, target, first, target.length - first);
+        }
+    }
+
+    private void putString(int offset, int capacity, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        mapping.putInt(offset, bytes.length);
+        mapping.put(offset + 4, bytes);
+    }
+
+    private static boolean fits(String value, int capacity) {
+        return value.getBytes(StandardCharsets.UTF_8).length <= capacity - 4;
+    }
+
+    private String getString(int offset, int capacity) {
+        int length = mapping.getInt(offset);
+        if (length <= 0 || length > capacity - 4) {
+            return "";
+        }
+        byte[] bytes = new byte[length];
+        mapping.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
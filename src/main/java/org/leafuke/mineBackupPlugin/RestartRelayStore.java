@@ -8,15 +8,15 @@ import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.List;
 import java.util.Properties;
 import java.util.UUID;
 
 public final class RestartRelayStore {
-    private static final String SESSION_FILE = "restart-session.properties";
-    private static final String RELAY_FILE = "restart-relay.log";
-    private static final String READY_FILE = "restart-sidecar.ready";
+    private static final String RING_FILE = "restart-relay.ring";
+    private static final String TIMELINE_FILE = "restore-timeline.log";
+    private static final String DAEMON_ENDPOINT_FILE = "restart-sidecar.endpoint";
+    private static final String ACK_FILE = "restart-relay.ack";
 
     private RestartRelayStore() {
     }
@@ -32,129 +32,189 @@ public final class RestartRelayStore {
                 restartScriptPath
         );
 
-        writeSession(dataDirectory, session);
-        Files.deleteIfExists(getRelayPath(dataDirectory));
-        Files.deleteIfExists(getReadyPath(dataDirectory));
+        try (RelayRing ring = RelayRing.open(dataDirectory, true)) {
+            ring.startSession(session);
+        }
+        Files.deleteIfExists(getAckPath(dataDirectory));
         return session;
     }
 
-    public static void writeSession(Path dataDirectory, Session session) throws IOException {
+    /**
+     * See {@link RelayRing#commit}. Returns the session with its relay clock restarted now.
+     */
+    public static Session commitSession(Path dataDirectory, String sessionId) throws IOException {
+        try (RelayRing ring = RelayRing.open(dataDirectory, true)) {
+            Session session = ring.commit(sessionId, Instant.now().toEpochMilli());
+            if (session == null) {
+                throw new IOException("relay session " + sessionId + " is no longer current");
+            }
+            return session;
+        }
+    }
+
+    /** Ends the session if it is still {@code sessionId}, leaving any newer session alone. */
+    public static void discardSession(Path dataDirectory, String sessionId) {
+        try (RelayRing ring = RelayRing.open(dataDirectory, false)) {
+            Session current = ring == null ? null : ring.readSession();
+            if (current != null && current.id().equals(sessionId)) {
+                ring.endSession();
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    /** Returns the current session, but only if it was committed to a restart. */
+    public static Session readCommittedSession(Path dataDirectory) {
+        try (RelayRing ring = RelayRing.open(dataDirectory, false)) {
+            Session session = ring == null ? null : ring.readSession();
+            return session != null && ring.isCommitted(session.id()) ? session : null;
+        } catch (IOException ignored) {
+            return null;
+        }
+    }
+
+    public static boolean isSidecarReady(Path dataDirectory, String sessionId) {
+        try (RelayRing ring = RelayRing.open(dataDirectory, false)) {
+            return ring != null && ring.isReady(sessionId);
+        } catch (IOException ignored) {
+            return false;
+        }
+    }
+
+    /**
+     * Publishes where a warm sidecar daemon listens for its arm command. Only loopback ports are used; the
+     * token keeps other local processes from arming it.
+     */
+    public static void writeDaemonEndpoint(Path dataDirectory, DaemonEndpoint endpoint) throws IOException {
+        Files.createDirectories(dataDirectory);
         Properties properties = new Properties();
-        properties.setProperty("session.id", session.id());
-        properties.setProperty("session.created_at", Long.toString(session.createdAtMillis()));
-        properties.setProperty("session.relay_timeout_seconds", Integer.toString(session.relayTimeoutSeconds()));
-        properties.setProperty("session.restart_script_path", session.restartScriptPath());
+        properties.setProperty("daemon.port", Integer.toString(endpoint.port()));
+        properties.setProperty("daemon.token", endpoint.token());
+        properties.setProperty("daemon.pid", Long.toString(endpoint.processId()));
+        properties.setProperty("daemon.parent_pid", Long.toString(endpoint.parentProcessId()));
         try (BufferedWriter writer = Files.newBufferedWriter(
-                getSessionPath(dataDirectory), StandardCharsets.UTF_8,
+                getDaemonEndpointPath(dataDirectory), StandardCharsets.UTF_8,
                 StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
-            properties.store(writer, "MineBackup restart relay session");
+            properties.store(writer, "MineBackup warm sidecar endpoint");
         }
     }
 
-    public static Session readSession(Path dataDirectory) {
-        Path sessionPath = getSessionPath(dataDirectory);
-        if (!Files.exists(sessionPath)) {
+    public static DaemonEndpoint readDaemonEndpoint(Path dataDirectory) {
+        Path endpointPath = getDaemonEndpointPath(dataDirectory);
+        if (!Files.exists(endpointPath)) {
             return null;
         }
 
         Properties properties = new Properties();
-        try (var reader = Files.newBufferedReader(sessionPath, StandardCharsets.UTF_8)) {
+        try (var reader = Files.newBufferedReader(endpointPath, StandardCharsets.UTF_8)) {
             properties.load(reader);
-            return new Session(
-                    properties.getProperty("session.id", ""),
-                    Long.parseLong(properties.getProperty("session.created_at", "0")),
-                    Integer.parseInt(properties.getProperty("session.relay_timeout_seconds", "0")),
-                    properties.getProperty("session.restart_script_path", "")
+            return new DaemonEndpoint(
+                    Integer.parseInt(properties.getProperty("daemon.port", "0")),
+                    properties.getProperty("daemon.token", ""),
+                    Long.parseLong(properties.getProperty("daemon.pid", "0")),
+                    Long.parseLong(properties.getProperty("daemon.parent_pid", "0"))
             );
         } catch (Exception ignored) {
             return null;
         }
     }
 
-    public static void markSidecarReady(Path dataDirectory, String sessionId, long processId) throws IOException {
-        Properties properties = new Properties();
-        properties.setProperty("session.id", sessionId);
-        properties.setProperty("sidecar.pid", Long.toString(processId));
-        properties.setProperty("sidecar.ready_at", Long.toString(Instant.now().toEpochMilli()));
-        try (BufferedWriter writer = Files.newBufferedWriter(
-                getReadyPath(dataDirectory), StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
-            properties.store(writer, "MineBackup sidecar ready marker");
+    /** Removes the endpoint file if it still belongs to the daemon with {@code processId}. */
+    public static void deleteDaemonEndpoint(Path dataDirectory, long processId) {
+        DaemonEndpoint endpoint = readDaemonEndpoint(dataDirectory);
+        if (endpoint == null || endpoint.processId() != processId) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(getDaemonEndpointPath(dataDirectory));
+        } catch (IOException ignored) {
         }
     }
 
-    public static boolean isSidecarReady(Path dataDirectory, String sessionId) {
-        Path readyPath = getReadyPath(dataDirectory);
-        if (!Files.exists(readyPath)) {
-            return false;
-        }
+    /**
+     * Tells the sidecar that the restarted plugin now receives broadcasts itself, so it can stop relaying.
+     */
+    public static void acknowledgeRelay(Path dataDirectory, String sessionId) throws IOException {
+        Files.writeString(getAckPath(dataDirectory), sessionId, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
 
-        Properties properties = new Properties();
-        try (var reader = Files.newBufferedReader(readyPath, StandardCharsets.UTF_8)) {
-            properties.load(reader);
-            return sessionId.equals(properties.getProperty("session.id"));
-        } catch (Exception ignored) {
+    public static boolean isRelayAcknowledged(Path dataDirectory, String sessionId) {
+        try {
+            return sessionId.equals(Files.readString(getAckPath(dataDirectory), StandardCharsets.UTF_8).trim());
+        } catch (IOException ignored) {
             return false;
         }
     }
 
-    public static synchronized void appendRelayEvent(Path dataDirectory, long sequence, String payload) throws IOException {
+    /**
+     * Starts a new restore timeline. The timeline outlives the relay session so it can still be shown after
+     * the restart; the next restore replaces it.
+     */
+    public static synchronized void resetTimeline(Path dataDirectory) throws IOException {
         Files.createDirectories(dataDirectory);
-        String encodedPayload = Base64.getEncoder().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
-        String line = sequence + "|" + Instant.now().toEpochMilli() + "|" + encodedPayload + System.lineSeparator();
+        Files.deleteIfExists(getTimelinePath(dataDirectory));
+    }
+
+    /**
+     * Appends a milestone; shared by the server process, the sidecar and the restarted server, which write one
+     * after another.
+     */
+    public static synchronized void appendTimelineMilestone(Path dataDirectory, String milestone, long atMillis)
+            throws IOException {
         Files.writeString(
-                getRelayPath(dataDirectory),
-                line,
+                getTimelinePath(dataDirectory),
+                milestone + "|" + atMillis + System.lineSeparator(),
                 StandardCharsets.UTF_8,
                 StandardOpenOption.CREATE,
                 StandardOpenOption.APPEND
         );
     }
 
-    public static List<RelayEvent> readRelayEvents(Path dataDirectory) {
-        Path relayPath = getRelayPath(dataDirectory);
-        if (!Files.exists(relayPath)) {
+    public static List<TimelineEntry> readTimeline(Path dataDirectory) {
+        Path timelinePath = getTimelinePath(dataDirectory);
+        if (!Files.exists(timelinePath)) {
             return List.of();
         }
 
-        List<RelayEvent> events = new ArrayList<>();
+        List<TimelineEntry> entries = new ArrayList<>();
         try {
-            for (String line : Files.readAllLines(relayPath, StandardCharsets.UTF_8)) {
-                String[] parts = line.split("\\|", 3);
-                if (parts.length != 3) {
-                    continue;
+            for (String line : Files.readAllLines(timelinePath, StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\\|", 2);
+                if (parts.length == 2) {
+                    entries.add(new TimelineEntry(parts[0], Long.parseLong(parts[1].trim())));
                 }
-
-                long sequence = Long.parseLong(parts[0]);
-                long receivedAtMillis = Long.parseLong(parts[1]);
-                String payload = new String(Base64.getDecoder().decode(parts[2]), StandardCharsets.UTF_8);
-                events.add(new RelayEvent(sequence, receivedAtMillis, payload));
             }
         } catch (Exception ignored) {
             return List.of();
         }
-        return events;
+        return entries;
     }
 
     public static void cleanup(Path dataDirectory) {
-        try {
-            Files.deleteIfExists(getSessionPath(dataDirectory));
-            Files.deleteIfExists(getRelayPath(dataDirectory));
-            Files.deleteIfExists(getReadyPath(dataDirectory));
+        try (RelayRing ring = RelayRing.open(dataDirectory, false)) {
+            if (ring != null) {
+                ring.endSession();
+            }
+            Files.deleteIfExists(getAckPath(dataDirectory));
         } catch (IOException ignored) {
         }
     }
 
-    public static Path getSessionPath(Path dataDirectory) {
-        return dataDirectory.resolve(SESSION_FILE);
+    public static Path getRingPath(Path dataDirectory) {
+        return dataDirectory.resolve(RING_FILE);
     }
 
-    public static Path getRelayPath(Path dataDirectory) {
-        return dataDirectory.resolve(RELAY_FILE);
+    public static Path getTimelinePath(Path dataDirectory) {
+        return dataDirectory.resolve(TIMELINE_FILE);
     }
 
-    public static Path getReadyPath(Path dataDirectory) {
-        return dataDirectory.resolve(READY_FILE);
+    public static Path getAckPath(Path dataDirectory) {
+        return dataDirectory.resolve(ACK_FILE);
+    }
+
+    public static Path getDaemonEndpointPath(Path dataDirectory) {
+        return dataDirectory.resolve(DAEMON_ENDPOINT_FILE);
     }
 
     public record Session(String id, long createdAtMillis, int relayTimeoutSeconds, String restartScriptPath) {
@@ -165,4 +225,10 @@ public final class RestartRelayStore {
 
     public record RelayEvent(long sequence, long receivedAtMillis, String payload) {
     }
+
+    public record TimelineEntry(String milestone, long atMillis) {
+    }
+
+    public record DaemonEndpoint(int port, String token, long processId, long parentProcessId) {
+    }
 }
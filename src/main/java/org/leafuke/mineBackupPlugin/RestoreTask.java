@@ -1,11 +1,13 @@
 package org.leafuke.mineBackupPlugin;
 
 import org.bukkit.Bukkit;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 import org.leafuke.mineBackupPlugin.knotlink.OpenSocketQuerier;
+import org.leafuke.mineBackupPlugin.scheduler.PluginScheduler;
+import org.leafuke.mineBackupPlugin.scheduler.TaskHandle;
 
+import java.nio.file.Path;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -13,57 +15,49 @@ public class RestoreTask {
     private static final int SHUTDOWN_ACK_CONNECT_TIMEOUT_MS = 500;
     private static final int SHUTDOWN_ACK_READ_TIMEOUT_MS = 1000;
 
-    public enum Phase {
-        NONE("Idle"),
-        WAITING_CONFIRM("Waiting Confirm"),
-        COUNTDOWN("Countdown"),
-        EXECUTING("Executing");
-
-        private final String displayName;
-
-        Phase(String displayName) {
-            this.displayName = displayName;
-        }
-
-        public String getDisplayName() {
-            return displayName;
-        }
-    }
-
     private static final AtomicReference<RestoreTask> CURRENT_TASK = new AtomicReference<>(null);
 
     private final MineBackupPlugin plugin;
     private final BackupLogger logger;
     private final LanguageManager languageManager;
+    private final PluginScheduler scheduler;
     private final String restoreCommand;
     private final String initiator;
     private final boolean remote;
     private final long startTimeMillis;
+    private final Path dataDirectory;
 
-    private volatile Phase phase = Phase.NONE;
-    private BukkitTask countdownTask;
-    private BukkitTask confirmTimeoutTask;
+    private TaskHandle countdownTask;
+    private TaskHandle confirmTimeoutTask;
     private volatile int remainingSeconds;
+    private volatile String targetWorldName;
+    private volatile boolean prepareRequested;
+    private volatile boolean prepared;
+    private volatile int preparePercent = -1;
     private final AtomicBoolean aborted = new AtomicBoolean(false);
 
     public RestoreTask(MineBackupPlugin plugin, String restoreCommand, String initiator) {
         this.plugin = plugin;
         this.logger = plugin.getBackupLogger();
         this.languageManager = plugin.getLanguageManager();
+        this.scheduler = plugin.getPluginScheduler();
         this.restoreCommand = restoreCommand;
         this.initiator = initiator;
         this.remote = false;
         this.startTimeMillis = System.currentTimeMillis();
+        this.dataDirectory = plugin.getDataFolder().toPath();
     }
 
     public RestoreTask(MineBackupPlugin plugin) {
         this.plugin = plugin;
         this.logger = plugin.getBackupLogger();
         this.languageManager = plugin.getLanguageManager();
+        this.scheduler = plugin.getPluginScheduler();
         this.restoreCommand = null;
         this.initiator = "MineBackup Main Program";
         this.remote = true;
         this.startTimeMillis = System.currentTimeMillis();
+        this.dataDirectory = plugin.getDataFolder().toPath();
     }
 
     public static RestoreTask getCurrentTask() {
@@ -72,11 +66,12 @@ public class RestoreTask {
 
     public static boolean hasActiveTask() {
         RestoreTask task = CURRENT_TASK.get();
-        return task != null && task.phase != Phase.NONE;
+        return task != null && HotRestoreState.phase() != HotRestoreState.Phase.IDLE;
     }
 
-    public Phase getPhase() {
-        return phase;
+    /** The restore phase; there is only one restore at a time, so this is the plugin-wide phase. */
+    public HotRestoreState.Phase getPhase() {
+        return HotRestoreState.phase();
     }
 
     public String getInitiator() {
@@ -87,6 +82,14 @@ public class RestoreTask {
         return remote;
     }
 
+    /**
+     * The world named in the backend's {@code pre_hot_restore} event; enables a world-scoped restore when it
+     * is a secondary world.
+     */
+    public void setTargetWorldName(String targetWorldName) {
+        this.targetWorldName = targetWorldName;
+    }
+
     public boolean start() {
         if (!CURRENT_TASK.compareAndSet(null, this)) {
             return false;
@@ -95,24 +98,32 @@ public class RestoreTask {
         if (remote) {
             languageManager.broadcastMessage("minebackup.restore.remote_initiated");
             if (Config.isRemoteRestoreCountdown()) {
+                if (!HotRestoreState.transition(HotRestoreState.Phase.COUNTDOWN, "remote restore requested")) {
+                    return release();
+                }
                 int seconds = Config.getRemoteCountdownSeconds();
                 logger.info("RESTORE", "Remote restore triggered, starting " + seconds + " second countdown.");
                 startCountdown(seconds);
             } else {
                 logger.info("RESTORE", "Remote restore triggered, executing immediately.");
+                RestoreTimeline.begin(dataDirectory);
                 performShutdown();
             }
             return true;
         }
 
         if (Config.isRequireConfirm()) {
-            phase = Phase.WAITING_CONFIRM;
+            if (!HotRestoreState.transition(HotRestoreState.Phase.WAITING_CONFIRM,
+                    "restore requested by " + initiator)) {
+                return release();
+            }
             int timeout = Config.getConfirmTimeoutSeconds();
             logger.info("RESTORE", "Restore requested by [" + initiator + "], waiting for confirmation. command="
                     + restoreCommand + ", timeout=" + timeout + "s");
             languageManager.broadcastMessage("minebackup.restore.confirm_prompt", String.valueOf(timeout));
-            confirmTimeoutTask = Bukkit.getScheduler().runTaskLater(plugin, () -> {
-                if (phase == Phase.WAITING_CONFIRM) {
+            confirmTimeoutTask = scheduler.runGlobalLater(() -> {
+                if (HotRestoreState.transition(HotRestoreState.Phase.WAITING_CONFIRM, HotRestoreState.Phase.IDLE,
+                        "confirmation timed out")) {
                     logger.warn("RESTORE", "Restore confirmation timed out.");
                     languageManager.broadcastMessage("minebackup.restore.confirm_timeout");
                     cleanup();
@@ -121,13 +132,17 @@ public class RestoreTask {
             return true;
         }
 
+        if (!HotRestoreState.transition(HotRestoreState.Phase.COUNTDOWN, "restore requested by " + initiator)) {
+            return release();
+        }
         logger.info("RESTORE", "Restore requested by [" + initiator + "] without confirmation. command=" + restoreCommand);
         startCountdown(Config.getCountdownSeconds());
         return true;
     }
 
     public boolean confirm() {
-        if (phase != Phase.WAITING_CONFIRM) {
+        if (!HotRestoreState.transition(HotRestoreState.Phase.WAITING_CONFIRM, HotRestoreState.Phase.COUNTDOWN,
+                "restore confirmed")) {
             return false;
         }
 
@@ -140,27 +155,38 @@ public class RestoreTask {
     }
 
     public boolean abort(String reason) {
-        if (phase == Phase.EXECUTING || phase == Phase.NONE) {
+        HotRestoreState.Phase abortedPhase = HotRestoreState.phase();
+        if (abortedPhase != HotRestoreState.Phase.WAITING_CONFIRM && abortedPhase != HotRestoreState.Phase.COUNTDOWN) {
             return false;
         }
-        if (!aborted.compareAndSet(false, true)) {
+        // Fails if the countdown finished or the confirmation timed out first.
+        if (!HotRestoreState.transition(abortedPhase, HotRestoreState.Phase.IDLE, "aborted: " + reason)) {
             return false;
         }
+        aborted.set(true);
 
-        logger.info("RESTORE", "Restore aborted during [" + phase.getDisplayName() + "], reason: " + reason);
+        logger.info("RESTORE", "Restore aborted during [" + abortedPhase.getDisplayName() + "], reason: " + reason);
+        if (prepareRequested) {
+            OpenSocketQuerier.query(MineBackupPlugin.QUERIER_APP_ID, MineBackupPlugin.QUERIER_SOCKET_ID,
+                    "CANCEL_PREPARE_RESTORE");
+        }
         cancelTimer(countdownTask);
         cancelTimer(confirmTimeoutTask);
         countdownTask = null;
         confirmTimeoutTask = null;
         cleanup();
+        ServerRestartManager.cancelPrelaunchedSidecar(plugin);
+        RestoreTimeline.close(dataDirectory, "aborted");
         languageManager.broadcastMessage("minebackup.restore.aborted");
         return true;
     }
 
     public void performShutdown() {
-        phase = Phase.EXECUTING;
-        HotRestoreState.isRestoring = true;
-        HotRestoreState.waitingForServerStopAck = true;
+        HotRestoreState.transition(HotRestoreState.Phase.EXECUTING, "restore shutdown");
+
+        if (tryWorldScopedRestore()) {
+            return;
+        }
 
         languageManager.broadcastMessage("minebackup.restore.executing");
 
@@ -169,72 +195,173 @@ public class RestoreTask {
         if (saveResult.isPartialFailure()) {
             logger.warn("RESTORE", "Restore shutdown pre-save finished with partial failure.");
         }
+        RestoreTimeline.mark(dataDirectory, RestoreTimeline.SAVE_DONE);
 
         int playerCount = Bukkit.getOnlinePlayers().size();
         logger.info("RESTORE", "Disconnecting " + playerCount + " player(s) before restore.");
         for (Player player : Bukkit.getOnlinePlayers()) {
-            try {
-                player.kickPlayer(languageManager.getTranslation(player, "minebackup.restore.kick"));
-            } catch (Exception e) {
-                logger.error("RESTORE", "Failed to disconnect player " + player.getName() + ": " + e.getMessage());
-            }
+            scheduler.executeAtEntity(player, () -> {
+                try {
+                    player.kickPlayer(languageManager.getTranslation(player, "minebackup.restore.kick"));
+                } catch (Exception e) {
+                    logger.error("RESTORE", "Failed to disconnect player " + player.getName() + ": " + e.getMessage());
+                }
+            });
         }
+        RestoreTimeline.mark(dataDirectory, RestoreTimeline.KICK_DONE);
 
         sendShutdownAck();
+        RestoreTimeline.mark(dataDirectory, RestoreTimeline.ACK);
 
         long totalTime = System.currentTimeMillis() - startTimeMillis;
         logger.info("RESTORE", "Restore shutdown pipeline completed in " + totalTime
                 + "ms (initiator=" + initiator + ", remote=" + remote + ")");
 
         cleanup();
+        HotRestoreState.transition(HotRestoreState.Phase.EXECUTING, HotRestoreState.Phase.RESTARTING,
+                "server stopping for restore");
         ServerRestartManager.prepareRestart(plugin);
+        markJvmExit();
         logger.info("RESTORE", "Server shutting down for restore.");
         Bukkit.shutdown();
     }
 
+    private boolean tryWorldScopedRestore() {
+        if (!Config.isWorldScopedRestoreEnabled() || targetWorldName == null) {
+            return false;
+        }
+        World world = Bukkit.getWorld(targetWorldName);
+        String unsupportedReason = WorldScopedRestore.getUnsupportedReason(world);
+        if (unsupportedReason != null) {
+            logger.info("RESTORE", "World-scoped restore not possible for '" + targetWorldName + "' ("
+                    + unsupportedReason + "), restarting the server.");
+            return false;
+        }
+
+        languageManager.broadcastMessage("minebackup.restore.world_executing", targetWorldName);
+        if (WorldScopedRestore.begin(plugin, world) == null) {
+            return false;
+        }
+        ServerRestartManager.cancelPrelaunchedSidecar(plugin);
+        sendShutdownAck();
+        RestoreTimeline.mark(dataDirectory, RestoreTimeline.ACK);
+        logger.info("RESTORE", "World-scoped restore pipeline completed in " + (System.currentTimeMillis() - startTimeMillis)
+                + "ms (world=" + targetWorldName + ", initiator=" + initiator + ", remote=" + remote + ")");
+        cleanup();
+        return true;
+    }
+
     private void startCountdown(int seconds) {
-        phase = Phase.COUNTDOWN;
         remainingSeconds = seconds;
 
+        RestoreTimeline.begin(dataDirectory);
+        ServerRestartManager.prelaunchSidecar(plugin);
         logger.info("RESTORE", "Restore countdown started: " + seconds + "s");
         languageManager.broadcastMessage("minebackup.restore.countdown_start", String.valueOf(seconds));
+        requestPrepare();
 
-        countdownTask = new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (aborted.get()) {
-                    cancel();
-                    return;
-                }
+        countdownTask = scheduler.runGlobalTimer(task -> {
+            if (aborted.get()) {
+                task.cancel();
+                return;
+            }
 
-                if (remainingSeconds <= 0) {
-                    cancel();
-                    onCountdownComplete();
-                    return;
-                }
+            if (remainingSeconds <= 0) {
+                task.cancel();
+                onCountdownComplete();
+                return;
+            }
 
-                if (remainingSeconds <= 5 || remainingSeconds % 5 == 0) {
+            if (remainingSeconds <= 5 || remainingSeconds % 5 == 0) {
+                if (prepareRequested && !prepared && preparePercent >= 0) {
+                    languageManager.broadcastMessage("minebackup.restore.countdown_preparing",
+                            String.valueOf(remainingSeconds), String.valueOf(preparePercent));
+                } else {
                     languageManager.broadcastMessage("minebackup.restore.countdown",
                             String.valueOf(remainingSeconds));
                 }
-                remainingSeconds--;
             }
-        }.runTaskTimer(plugin, 20L, 20L);
+            remainingSeconds--;
+        }, 20L, 20L);
     }
 
     private void onCountdownComplete() {
+        if (!HotRestoreState.transition(HotRestoreState.Phase.COUNTDOWN, HotRestoreState.Phase.EXECUTING,
+                "countdown finished")) {
+            return;
+        }
+        RestoreTimeline.mark(dataDirectory, RestoreTimeline.COUNTDOWN_END);
         if (remote) {
             performShutdown();
             return;
         }
 
-        phase = Phase.EXECUTING;
-        HotRestoreState.isRestoring = true;
+        if (prepareRequested) {
+            logger.info("RESTORE", "Countdown finished, backup pre-staging "
+                    + (prepared ? "complete" : "still running (" + Math.max(0, preparePercent) + "%)") + ".");
+        }
         logger.info("RESTORE", "Countdown finished, sending restore command: " + restoreCommand);
         languageManager.broadcastMessage("minebackup.restore.executing");
         OpenSocketQuerier.query(MineBackupPlugin.QUERIER_APP_ID, MineBackupPlugin.QUERIER_SOCKET_ID, restoreCommand);
     }
 
+    /**
+     * Asks the backend to extract the chosen backup into its staging area while the countdown runs, so the
+     * swap after shutdown is a rename instead of a full extraction. Remote restores are prepared by the
+     * backend itself.
+     */
+    private void requestPrepare() {
+        if (remote || prepareRequested || !Config.isRestorePreStageEnabled()
+                || restoreCommand == null || !restoreCommand.startsWith("RESTORE ")) {
+            return;
+        }
+        prepareRequested = true;
+        String command = "PREPARE_" + restoreCommand;
+        OpenSocketQuerier.query(MineBackupPlugin.QUERIER_APP_ID, MineBackupPlugin.QUERIER_SOCKET_ID, command);
+        logger.info("RESTORE", "Requested backup pre-staging: " + command);
+    }
+
+    /** Called for {@code restore_prepare_progress} events. */
+    public void onPrepareProgress(int percent) {
+        if (!prepareRequested || prepared) {
+            return;
+        }
+        preparePercent = Math.max(0, Math.min(100, percent));
+        logger.debug("RESTORE", "Backup pre-staging at " + preparePercent + "%.");
+    }
+
+    /** Called for {@code restore_prepared} events. */
+    public void onPrepared(boolean success, String detail) {
+        if (!prepareRequested || prepared) {
+            return;
+        }
+        if (success) {
+            prepared = true;
+            preparePercent = 100;
+            logger.info("RESTORE", "Backup pre-staged " + (System.currentTimeMillis() - startTimeMillis)
+                    + "ms after the restore was requested.");
+            languageManager.broadcastMessage("minebackup.restore.prepared");
+        } else {
+            // The backend extracts after shutdown as before.
+            prepareRequested = false;
+            logger.warn("RESTORE", "Backup pre-staging failed: " + detail);
+            languageManager.broadcastMessage("minebackup.restore.prepare_failed");
+        }
+    }
+
+    private void markJvmExit() {
+        Path directory = dataDirectory;
+        try {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    RestoreTimeline.mark(directory, RestoreTimeline.JVM_EXIT);
+                } catch (Throwable ignored) {
+                }
+            }, "MineBackup-RestoreTimeline"));
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
     private void sendShutdownAck() {
         String response = OpenSocketQuerier.queryBlocking(
                 MineBackupPlugin.QUERIER_APP_ID,
@@ -252,11 +379,18 @@ public class RestoreTask {
     }
 
     private void cleanup() {
-        phase = Phase.NONE;
-        CURRENT_TASK.set(null);
+        CURRENT_TASK.compareAndSet(this, null);
+    }
+
+    /** Gives up the task slot when the restore phase could not be entered, e.g. another restore is executing. */
+    private boolean release() {
+        logger.warn("RESTORE", "Restore by [" + initiator + "] not started, current phase is "
+                + HotRestoreState.phase().getDisplayName() + ".");
+        cleanup();
+        return false;
     }
 
-    private void cancelTimer(BukkitTask task) {
+    private void cancelTimer(TaskHandle task) {
         if (task != null) {
             try {
                 task.cancel();
@@ -0,0 +1,112 @@
+package org.leafuke.mineBackupPlugin;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * End-to-end timing of one restore, from confirmation to players being able to rejoin, kept across the
+ * restart in the relay store. Loaded by the sidecar too, so it must not touch Bukkit classes.
+ */
+public final class RestoreTimeline {
+    public static final String CONFIRM = "confirm";
+    public static final String COUNTDOWN_END = "countdown_end";
+    public static final String SAVE_DONE = "save_done";
+    public static final String KICK_DONE = "kick_done";
+    public static final String ACK = "ack";
+    public static final String JVM_EXIT = "jvm_exit";
+    public static final String SIDECAR_EXIT_DETECTED = "sidecar_exit_detected";
+    public static final String SCRIPT_LAUNCH = "script_launch";
+    public static final String PLUGIN_ENABLE = "plugin_enable";
+    public static final String RESTORE_FINISHED = "restore_finished";
+    public static final String REJOIN_WORLD = "rejoin_world";
+    private static final String CLOSED = "closed";
+
+    private RestoreTimeline() {
+    }
+
+    /** Starts a new timeline with the {@link #CONFIRM} milestone. */
+    public static void begin(Path dataDirectory) {
+        try {
+            RestartRelayStore.resetTimeline(dataDirectory);
+            RestartRelayStore.appendTimelineMilestone(dataDirectory, CONFIRM, System.currentTimeMillis());
+        } catch (Exception ignored) {
+        }
+    }
+
+    /** Records a milestone if a restore timeline is open; otherwise does nothing. */
+    public static void mark(Path dataDirectory, String milestone) {
+        List<RestartRelayStore.TimelineEntry> entries = RestartRelayStore.readTimeline(dataDirectory);
+        if (entries.isEmpty() || isClosed(entries)) {
+            return;
+        }
+        try {
+            RestartRelayStore.appendTimelineMilestone(dataDirectory, milestone, System.currentTimeMillis());
+        } catch (Exception ignored) {
+        }
+    }
+
+    /**
+     * Records the final milestone and closes the timeline. Returns its summary, or {@code null} if no timeline
+     * was open.
+     */
+    public static String close(Path dataDirectory, String milestone) {
+        List<RestartRelayStore.TimelineEntry> entries = RestartRelayStore.readTimeline(dataDirectory);
+        if (entries.isEmpty() || isClosed(entries)) {
+            return null;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            RestartRelayStore.appendTimelineMilestone(dataDirectory, milestone, now);
+            RestartRelayStore.appendTimelineMilestone(dataDirectory, CLOSED, now);
+        } catch (Exception ignored) {
+        }
+        return summarize(dataDirectory);
+    }
+
+    /**
+     * "downtime X, total Y | confirm +0ms > countdown_end +10.0s > ...", or {@code null} without a timeline.
+     * Downtime runs from the first player-visible outage (kick or ack) to the last milestone.
+     */
+    public static String summarize(Path dataDirectory) {
+        List<RestartRelayStore.TimelineEntry> entries = RestartRelayStore.readTimeline(dataDirectory);
+        if (entries.isEmpty()) {
+            return null;
+        }
+
+        long start = entries.get(0).atMillis();
+        long previous = start;
+        long outageStart = -1L;
+        long end = start;
+        StringBuilder breakdown = new StringBuilder();
+        for (RestartRelayStore.TimelineEntry entry : entries) {
+            if (entry.milestone().equals(CLOSED)) {
+                continue;
+            }
+            if (outageStart < 0L && (entry.milestone().equals(KICK_DONE) || entry.milestone().equals(ACK))) {
+                outageStart = entry.atMillis();
+            }
+            if (breakdown.length() > 0) {
+                breakdown.append(" > ");
+            }
+            breakdown.append(entry.milestone()).append(" +").append(formatDuration(entry.atMillis() - previous));
+            previous = entry.atMillis();
+            end = Math.max(end, entry.atMillis());
+        }
+
+        String downtime = outageStart >= 0L ? formatDuration(end - outageStart) : "-";
+        return "downtime " + downtime + ", total " + formatDuration(end - start)
+                + (isClosed(entries) ? "" : " (in progress)") + " | " + breakdown;
+    }
+
+    private static boolean isClosed(List<RestartRelayStore.TimelineEntry> entries) {
+        return entries.get(entries.size() - 1).milestone().equals(CLOSED);
+    }
+
+    static String formatDuration(long millis) {
+        if (millis < 1000L) {
+            return Math.max(0L, millis) + "ms";
+        }
+        return String.format(Locale.ROOT, "%.1fs", millis / 1000.0D);
+    }
+}
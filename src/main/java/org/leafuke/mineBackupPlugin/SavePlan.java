@@ -0,0 +1,94 @@
+package org.leafuke.mineBackupPlugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+public final class SavePlan {
+    public enum PlayerFlushMode {
+        BULK("bulk"),
+        PER_PLAYER("per-player"),
+        DIRTY_ONLY("dirty-only");
+
+        private final String configName;
+
+        PlayerFlushMode(String configName) {
+            this.configName = configName;
+        }
+
+        public String getConfigName() {
+            return configName;
+        }
+
+        public static PlayerFlushMode fromConfig(String value) {
+            if (value != null) {
+                String normalized = value.trim().toLowerCase(Locale.ROOT).replace('_', '-');
+                for (PlayerFlushMode mode : values()) {
+                    if (mode.configName.equals(normalized)) {
+                        return mode;
+                    }
+                }
+            }
+            return PER_PLAYER;
+        }
+    }
+
+    private final PlayerFlushMode playerFlushMode;
+    private final List<Player> players;
+    private final int onlinePlayerCount;
+    private final List<World> worlds;
+
+    private SavePlan(PlayerFlushMode playerFlushMode, List<Player> players, int onlinePlayerCount, List<World> worlds) {
+        this.playerFlushMode = playerFlushMode;
+        this.players = players;
+        this.onlinePlayerCount = onlinePlayerCount;
+        this.worlds = worlds;
+    }
+
+    public static SavePlan create(PlayerDirtyTracker dirtyTracker) {
+        return create(PlayerFlushMode.fromConfig(Config.getPlayerFlushMode()), dirtyTracker,
+                Bukkit.getOnlinePlayers(), Bukkit.getWorlds());
+    }
+
+    static SavePlan create(PlayerFlushMode mode, PlayerDirtyTracker dirtyTracker,
+                           Collection<? extends Player> onlinePlayers, List<World> worlds) {
+        if (mode == PlayerFlushMode.DIRTY_ONLY && dirtyTracker == null) {
+            mode = PlayerFlushMode.PER_PLAYER;
+        }
+
+        List<Player> targets = new ArrayList<>();
+        int online = 0;
+        for (Player player : onlinePlayers) {
+            online++;
+            if (mode != PlayerFlushMode.DIRTY_ONLY || dirtyTracker.isDirty(player)) {
+                targets.add(player);
+            }
+        }
+        return new SavePlan(mode, targets, online, new ArrayList<>(worlds));
+    }
+
+    public PlayerFlushMode getPlayerFlushMode() {
+        return playerFlushMode;
+    }
+
+    public List<Player> getPlayers() {
+        return players;
+    }
+
+    public int getOnlinePlayerCount() {
+        return onlinePlayerCount;
+    }
+
+    public int getSkippedPlayerCount() {
+        return onlinePlayerCount - players.size();
+    }
+
+    public List<World> getWorlds() {
+        return worlds;
+    }
+}
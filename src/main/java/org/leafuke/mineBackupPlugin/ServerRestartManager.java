@@ -3,14 +3,42 @@ package org.leafuke.mineBackupPlugin;
 import org.bukkit.Bukkit;
 import org.leafuke.mineBackupPlugin.sidecar.RestartSidecarMain;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 public final class ServerRestartManager {
     private static final String RESTART_FLAG_FILE = ".minebackup-restart";
+    private static final String WARM_SIDECAR_OUTPUT_FILE = "restart-sidecar.out";
+    private static final int WARM_SIDECAR_CONNECT_TIMEOUT_MILLIS = 250;
+    private static final int WARM_SIDECAR_REPLY_TIMEOUT_MILLIS = 2000;
+
+    // The sidecar watches its stdin pipe for EOF to notice the server exit. Holding the Process keeps the pipe
+    // from being closed by the garbage collector while the server is still running.
+    private static volatile Process sidecarProcess;
+    private static final AtomicReference<CompletableFuture<PendingSidecar>> PRELAUNCHED_SIDECAR =
+            new AtomicReference<>(null);
+
+    private record PendingSidecar(Process process, RestartRelayStore.Session session, CompletableFuture<Long> ready) {
+    }
 
     private ServerRestartManager() {
     }
@@ -68,61 +96,265 @@ public final class ServerRestartManager {
 
         Path dataDirectory = plugin.getDataFolder().toPath();
         RestartRelayStore.Session session;
+        boolean ready;
+        PendingSidecar prelaunched = takePrelaunchedSidecar(plugin, logger);
+        if (prelaunched != null) {
+            session = prelaunched.session();
+            ready = prelaunched.ready().isDone();
+            logger.info("RESTART", ready
+                    ? "Using the sidecar launched at countdown start (pid " + prelaunched.process().pid() + ")."
+                    : "Sidecar launched at countdown start is not ready yet; continuing without waiting.");
+        } else {
+            try {
+                session = RestartRelayStore.createSession(
+                        dataDirectory,
+                        Config.getRestartScriptPath(),
+                        Config.getSidecarRelayTimeoutSeconds()
+                );
+            } catch (IOException e) {
+                logger.error("RESTART", "Failed to create sidecar relay session: " + e.getMessage());
+                return;
+            }
+            ready = armWarmSidecar(dataDirectory, session, logger) || launchSidecarAndWait(plugin, session, logger);
+        }
+
         try {
-            session = RestartRelayStore.createSession(
-                    dataDirectory,
-                    Config.getRestartScriptPath(),
-                    Config.getSidecarRelayTimeoutSeconds()
-            );
+            session = RestartRelayStore.commitSession(dataDirectory, session.id());
         } catch (IOException e) {
-            logger.error("RESTART", "Failed to create sidecar relay session: " + e.getMessage());
+            logger.error("RESTART", "Failed to commit sidecar relay session, the server will not be relaunched: "
+                    + e.getMessage());
             return;
         }
 
-        HotRestoreState.relaySessionActive = true;
-        HotRestoreState.sidecarReady = false;
-        HotRestoreState.relaySessionDeadlineMillis = session.relayDeadlineMillis();
-        HotRestoreState.lastRelaySequence = 0L;
+        HotRestoreState.startRelay(ready, session.relayDeadlineMillis(), "sidecar relay session committed");
+    }
 
-        try {
-            Process sidecarProcess = startSidecarProcess(plugin, session);
-            logger.info("RESTART", "Sidecar process launched with pid " + sidecarProcess.pid());
-        } catch (Exception e) {
-            logger.error("RESTART", "Failed to launch sidecar process: " + e.getMessage());
+    /**
+     * Launches a sidecar for a fresh relay session in the background when a restore countdown starts, so that by
+     * the time the server shuts down the sidecar is already relaying and the shutdown path only has to commit
+     * the session. The session is not committed until then; if the restore is aborted the sidecar is stopped,
+     * and if the server stops for any other reason the sidecar exits without relaunching it.
+     */
+    public static void prelaunchSidecar(MineBackupPlugin plugin) {
+        // A warm daemon is armed in about a millisecond at shutdown, so there is nothing to gain from it.
+        if (!Config.isRestartEnabled() || !"sidecar".equalsIgnoreCase(Config.getRestartMethod())
+                || Config.isWarmSidecarEnabled()) {
             return;
         }
 
-        long timeoutAt = System.currentTimeMillis() + Config.getSidecarStartTimeoutSeconds() * 1000L;
-        while (System.currentTimeMillis() < timeoutAt) {
-            if (RestartRelayStore.isSidecarReady(dataDirectory, session.id())) {
-                HotRestoreState.sidecarReady = true;
-                logger.info("RESTART", "Sidecar reported ready. Relay session id=" + session.id());
-                return;
-            }
+        BackupLogger logger = plugin.getBackupLogger();
+        CompletableFuture<PendingSidecar> launch = new CompletableFuture<>();
+        discard(PRELAUNCHED_SIDECAR.getAndSet(launch), plugin.getDataFolder().toPath());
+        plugin.getPluginScheduler().runAsync(() -> {
             try {
-                Thread.sleep(100L);
-            } catch (InterruptedException ignored) {
-                Thread.currentThread().interrupt();
-                break;
+                RestartRelayStore.Session session = RestartRelayStore.createSession(
+                        plugin.getDataFolder().toPath(),
+                        Config.getRestartScriptPath(),
+                        Config.getSidecarRelayTimeoutSeconds()
+                );
+                launch.complete(launchSidecar(plugin, session, logger));
+            } catch (Exception e) {
+                logger.warn("RESTART", "Failed to launch sidecar at countdown start, it will be launched at shutdown: "
+                        + e.getMessage());
+                launch.completeExceptionally(e);
             }
+        });
+    }
+
+    /** Stops a sidecar launched by {@link #prelaunchSidecar} for a restore that will not restart the server. */
+    public static void cancelPrelaunchedSidecar(MineBackupPlugin plugin) {
+        discard(PRELAUNCHED_SIDECAR.getAndSet(null), plugin.getDataFolder().toPath());
+    }
+
+    private static PendingSidecar takePrelaunchedSidecar(MineBackupPlugin plugin, BackupLogger logger) {
+        CompletableFuture<PendingSidecar> launch = PRELAUNCHED_SIDECAR.getAndSet(null);
+        if (launch == null) {
+            return null;
+        }
+        PendingSidecar pending = launch.getNow(null);
+        if (pending == null || !pending.process().isAlive()) {
+            logger.warn("RESTART", "Sidecar launched at countdown start is unavailable, launching a new one.");
+            discard(launch, plugin.getDataFolder().toPath());
+            return null;
+        }
+        return pending;
+    }
+
+    private static void discard(CompletableFuture<PendingSidecar> launch, Path dataDirectory) {
+        if (launch == null) {
+            return;
+        }
+        launch.thenAccept(pending -> {
+            pending.process().destroy();
+            RestartRelayStore.discardSession(dataDirectory, pending.session().id());
+        });
+    }
+
+    private static boolean launchSidecarAndWait(MineBackupPlugin plugin, RestartRelayStore.Session session,
+                                                BackupLogger logger) {
+        PendingSidecar pending;
+        try {
+            pending = launchSidecar(plugin, session, logger);
+        } catch (Exception e) {
+            logger.error("RESTART", "Failed to launch sidecar process: " + e.getMessage());
+            return false;
         }
 
+        try {
+            pending.ready().get(Config.getSidecarStartTimeoutSeconds(), TimeUnit.SECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ignored) {
+        }
         logger.warn("RESTART", "Sidecar did not report ready before timeout.");
+        return false;
+    }
+
+    /**
+     * Starts a sidecar for {@code session}. Its readiness arrives over its stdout, which a reader thread keeps
+     * draining for the life of the process.
+     */
+    private static PendingSidecar launchSidecar(MineBackupPlugin plugin, RestartRelayStore.Session session,
+                                                BackupLogger logger) throws IOException, URISyntaxException {
+        long launchedAtNanos = System.nanoTime();
+        Process process = startSidecarProcess(plugin, session);
+        sidecarProcess = process;
+        logger.info("RESTART", "Sidecar process launched with pid " + process.pid());
+
+        CompletableFuture<Long> ready = new CompletableFuture<>();
+        String readyLine = RestartSidecarMain.READY_LINE_PREFIX + session.id();
+        Thread reader = new Thread(() -> {
+            try (BufferedReader output = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = output.readLine()) != null) {
+                    if (!ready.isDone() && line.equals(readyLine)) {
+                        long elapsedMillis = (System.nanoTime() - launchedAtNanos) / 1_000_000L;
+                        ready.complete(elapsedMillis);
+                        logger.info("RESTART", "Sidecar ready " + elapsedMillis + "ms after launch. Relay session id="
+                                + session.id());
+                    }
+                }
+            } catch (IOException ignored) {
+            }
+        }, "minebackup-sidecar-output");
+        reader.setDaemon(true);
+        reader.start();
+        return new PendingSidecar(process, session, ready);
+    }
+
+    /**
+     * Starts the warm sidecar daemon if sidecar restarts and {@code restart.sidecar.warm} are enabled and no
+     * daemon from this server process is already listening (e.g. after a plugin reload). Blocks briefly on
+     * process launch, so call it off the main thread.
+     */
+    public static void startWarmSidecar(MineBackupPlugin plugin) {
+        if (!Config.isRestartEnabled() || !"sidecar".equalsIgnoreCase(Config.getRestartMethod())
+                || !Config.isWarmSidecarEnabled()) {
+            return;
+        }
+
+        BackupLogger logger = plugin.getBackupLogger();
+        Path dataDirectory = plugin.getDataFolder().toPath();
+        RestartRelayStore.DaemonEndpoint endpoint = RestartRelayStore.readDaemonEndpoint(dataDirectory);
+        if (endpoint != null && endpoint.parentProcessId() == ProcessHandle.current().pid()
+                && "PONG".equals(sendSidecarCommand(endpoint, RestartSidecarMain.COMMAND_PING))) {
+            logger.info("RESTART", "Reusing warm sidecar daemon with pid " + endpoint.processId());
+            return;
+        }
+
+        try {
+            ProcessBuilder builder = createSidecarProcessBuilder(plugin, List.of("--mode", "daemon"));
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(ProcessBuilder.Redirect.appendTo(
+                    dataDirectory.resolve(WARM_SIDECAR_OUTPUT_FILE).toFile()));
+            sidecarProcess = builder.start();
+            logger.info("RESTART", "Warm sidecar daemon launched with pid " + sidecarProcess.pid());
+        } catch (Exception e) {
+            logger.warn("RESTART", "Failed to launch warm sidecar daemon, restores will start a sidecar on demand: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Hands the relay session to the warm daemon. Returns {@code false} when there is no usable daemon, in which
+     * case the caller launches a sidecar the old way.
+     */
+    private static boolean armWarmSidecar(Path dataDirectory, RestartRelayStore.Session session, BackupLogger logger) {
+        if (!Config.isWarmSidecarEnabled()) {
+            return false;
+        }
+        RestartRelayStore.DaemonEndpoint endpoint = RestartRelayStore.readDaemonEndpoint(dataDirectory);
+        if (endpoint == null || endpoint.parentProcessId() != ProcessHandle.current().pid()) {
+            logger.warn("RESTART", "No warm sidecar daemon available, launching a sidecar now.");
+            return false;
+        }
+
+        long start = System.currentTimeMillis();
+        String response = sendSidecarCommand(endpoint, String.join("|",
+                RestartSidecarMain.COMMAND_ARM,
+                session.id(),
+                Integer.toString(session.relayTimeoutSeconds()),
+                Base64.getEncoder().encodeToString(session.restartScriptPath().getBytes(StandardCharsets.UTF_8))));
+        if (!"OK".equals(response)) {
+            logger.warn("RESTART", "Warm sidecar did not accept the relay session (" + response
+                    + "), launching a sidecar now.");
+            return false;
+        }
+        logger.info("RESTART", "Warm sidecar armed in " + (System.currentTimeMillis() - start)
+                + "ms. Relay session id=" + session.id());
+        return true;
+    }
+
+    /**
+     * Sends one control command and returns the daemon's reply line, or {@code null} if it could not be reached.
+     * {@code command} is the verb followed by its arguments; the token is inserted after the verb.
+     */
+    private static String sendSidecarCommand(RestartRelayStore.DaemonEndpoint endpoint, String command) {
+        String[] parts = command.split("\\|", 2);
+        String line = parts[0] + "|" + endpoint.token() + (parts.length > 1 ? "|" + parts[1] : "");
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), endpoint.port()),
+                    WARM_SIDECAR_CONNECT_TIMEOUT_MILLIS);
+            socket.setSoTimeout(WARM_SIDECAR_REPLY_TIMEOUT_MILLIS);
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            writer.write(line + "\n");
+            writer.flush();
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            return reader.readLine();
+        } catch (IOException e) {
+            return null;
+        }
     }
 
     private static Process startSidecarProcess(MineBackupPlugin plugin, RestartRelayStore.Session session)
             throws IOException, URISyntaxException {
+        return createSidecarProcessBuilder(plugin, List.of(
+                "--relay-timeout-seconds",
+                Integer.toString(session.relayTimeoutSeconds()),
+                "--session-id",
+                session.id(),
+                "--restart-script",
+                session.restartScriptPath()
+        )).start();
+    }
+
+    private static ProcessBuilder createSidecarProcessBuilder(MineBackupPlugin plugin, List<String> extraArguments)
+            throws URISyntaxException {
         String javaBin = Path.of(System.getProperty("java.home"), "bin",
                 isWindows() ? "java.exe" : "java").toString();
-        String classpathEntry = Path.of(
+        Path pluginJar = Path.of(
                 RestartSidecarMain.class.getProtectionDomain().getCodeSource().getLocation().toURI()
-        ).toString();
+        );
 
         Path workDirectory = Path.of("").toAbsolutePath().normalize();
-        ProcessBuilder builder = new ProcessBuilder(
-                javaBin,
-                "-cp",
-                classpathEntry,
+        List<String> command = new ArrayList<>();
+        command.add(javaBin);
+        command.addAll(SidecarClasspath.jvmArguments(
+                pluginJar, plugin.getDataFolder().toPath(), plugin.getBackupLogger()));
+        command.addAll(List.of(
                 RestartSidecarMain.class.getName(),
                 "--data-dir",
                 plugin.getDataFolder().getAbsolutePath(),
@@ -130,15 +362,17 @@ public final class ServerRestartManager {
                 workDirectory.toString(),
                 "--parent-pid",
                 Long.toString(ProcessHandle.current().pid()),
-                "--relay-timeout-seconds",
-                Integer.toString(session.relayTimeoutSeconds()),
-                "--session-id",
-                session.id(),
-                "--restart-script",
-                session.restartScriptPath()
-        );
+                "--relay-fsync",
+                Config.getSidecarRelayFsyncPolicy()
+        ));
+        if (Config.isSidecarWorldLockWaitEnabled() && !Bukkit.getWorlds().isEmpty()) {
+            command.add("--world-dir");
+            command.add(Bukkit.getWorlds().get(0).getWorldFolder().getAbsolutePath());
+        }
+        command.addAll(extraArguments);
+        ProcessBuilder builder = new ProcessBuilder(command);
         builder.directory(workDirectory.toFile());
-        return builder.start();
+        return builder;
     }
 
     private static boolean isWindows() {
@@ -0,0 +1,130 @@
+package org.leafuke.mineBackupPlugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Builds the sidecar's launch command line: a small jar holding only the classes the sidecar loads, extracted
+ * from the plugin jar once per plugin build, plus JVM flags for a short-lived, tiny process. On Java 19+ the
+ * sidecar also records and reuses a dynamic CDS archive, so after the first run its classes are mapped instead
+ * of loaded and verified.
+ */
+final class SidecarClasspath {
+    private static final String SIDECAR_DIRECTORY = "sidecar";
+    private static final String SIDECAR_JAR = "minebackup-sidecar.jar";
+    private static final String SIDECAR_ARCHIVE = "minebackup-sidecar.jsa";
+    private static final String BASE = "org/leafuke/mineBackupPlugin/";
+    private static final String[] SIDECAR_CLASS_PREFIXES = {
+            BASE + "sidecar/",
+            BASE + "knotlink/",
+            BASE + "RestartRelayStore",
+            BASE + "RelayRing",
+            BASE + "RestoreTimeline"
+    };
+    private static final List<String> FAST_JVM_FLAGS = List.of(
+            "-Xms8m",
+            "-Xmx32m",
+            "-Xss512k",
+            "-XX:+UseSerialGC",
+            "-XX:TieredStopAtLevel=1",
+            "-XX:-UsePerfData",
+            "-Xshare:auto"
+    );
+
+    private SidecarClasspath() {
+    }
+
+    /**
+     * Returns the JVM options and classpath ({@code -cp <path>}) for a sidecar launch. Falls back to the full
+     * plugin jar with default flags when fast launch is disabled or the slim jar cannot be built.
+     */
+    static List<String> jvmArguments(Path pluginJar, Path dataDirectory, BackupLogger logger) {
+        List<String> arguments = new ArrayList<>();
+        if (!Config.isSidecarFastLaunchEnabled() || !Files.isRegularFile(pluginJar)) {
+            arguments.add("-cp");
+            arguments.add(pluginJar.toString());
+            return arguments;
+        }
+
+        Path directory = dataDirectory.resolve(SIDECAR_DIRECTORY);
+        Path sidecarJar;
+        try {
+            sidecarJar = prepareJar(pluginJar, directory, logger);
+        } catch (IOException e) {
+            logger.warn("RESTART", "Failed to build the slim sidecar jar, using the plugin jar: " + e.getMessage());
+            arguments.add("-cp");
+            arguments.add(pluginJar.toString());
+            return arguments;
+        }
+
+        arguments.addAll(FAST_JVM_FLAGS);
+        if (Runtime.version().feature() >= 19) {
+            arguments.add("-XX:SharedArchiveFile=" + directory.resolve(SIDECAR_ARCHIVE));
+            arguments.add("-XX:+AutoCreateSharedArchive");
+        }
+        arguments.add("-cp");
+        arguments.add(sidecarJar.toString());
+        return arguments;
+    }
+
+    private static synchronized Path prepareJar(Path pluginJar, Path directory, BackupLogger logger)
+            throws IOException {
+        Path sidecarJar = directory.resolve(SIDECAR_JAR);
+        if (Files.isRegularFile(sidecarJar)
+                && Files.getLastModifiedTime(sidecarJar).compareTo(Files.getLastModifiedTime(pluginJar)) >= 0) {
+            return sidecarJar;
+        }
+
+        Files.createDirectories(directory);
+        Path temporary = directory.resolve(SIDECAR_JAR + ".tmp");
+        int classCount = 0;
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        try (JarFile source = new JarFile(pluginJar.toFile());
+             OutputStream output = Files.newOutputStream(temporary);
+             JarOutputStream jar = new JarOutputStream(output, manifest)) {
+            Enumeration<JarEntry> entries = source.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !isSidecarClass(entry.getName())) {
+                    continue;
+                }
+                jar.putNextEntry(new JarEntry(entry.getName()));
+                try (InputStream input = source.getInputStream(entry)) {
+                    input.transferTo(jar);
+                }
+                jar.closeEntry();
+                classCount++;
+            }
+        }
+        Files.move(temporary, sidecarJar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // The archive belongs to the previous jar; the JVM would discard it anyway, but only after a failed check.
+        Files.deleteIfExists(directory.resolve(SIDECAR_ARCHIVE));
+        logger.info("RESTART", "Built slim sidecar jar with " + classCount + " classes: " + sidecarJar);
+        return sidecarJar;
+    }
+
+    private static boolean isSidecarClass(String name) {
+        if (!name.endsWith(".class")) {
+            return false;
+        }
+        for (String prefix : SIDECAR_CLASS_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,121 @@
+package org.leafuke.mineBackupPlugin;
+
+import org.bukkit.Bukkit;
+import org.leafuke.mineBackupPlugin.scheduler.TaskHandle;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+
+/**
+ * Samples server tick health so saves can back off while the server is already lagging.
+ * Uses Paper's {@code getAverageTickTime()} when present, otherwise the measured interval between ticks.
+ */
+public final class TickHealthMonitor {
+    private static final int SAMPLE_COUNT = 100;
+    private static final double TARGET_TICK_MILLIS = 50.0D;
+    private static final double MIN_BUDGET_FACTOR = 0.1D;
+
+    private final MineBackupPlugin plugin;
+    private final long[] intervalNanos = new long[SAMPLE_COUNT];
+    private final Method paperAverageTickTime;
+
+    private TaskHandle samplerTask;
+    private long lastTickNanos;
+    private long intervalSumNanos;
+    private int sampleIndex;
+    private int sampleSize;
+    private volatile long lastIntervalNanos;
+
+    public TickHealthMonitor(MineBackupPlugin plugin) {
+        this.plugin = plugin;
+        this.paperAverageTickTime = findPaperAverageTickTime();
+    }
+
+    public void start() {
+        stop();
+        lastTickNanos = System.nanoTime();
+        samplerTask = plugin.getPluginScheduler().runGlobalTimer(this::sample, 1L, 1L);
+        plugin.getBackupLogger().debug("TICK", "Tick health source: "
+                + (paperAverageTickTime != null ? "Paper average tick time" : "measured tick interval"));
+    }
+
+    public void stop() {
+        if (samplerTask != null) {
+            samplerTask.cancel();
+            samplerTask = null;
+        }
+    }
+
+    private void sample() {
+        long now = System.nanoTime();
+        long interval = now - lastTickNanos;
+        lastTickNanos = now;
+        lastIntervalNanos = interval;
+
+        intervalSumNanos -= intervalNanos[sampleIndex];
+        intervalNanos[sampleIndex] = interval;
+        intervalSumNanos += interval;
+        sampleIndex = (sampleIndex + 1) % SAMPLE_COUNT;
+        if (sampleSize < SAMPLE_COUNT) {
+            sampleSize++;
+        }
+    }
+
+    public double getAverageMspt() {
+        if (paperAverageTickTime != null) {
+            try {
+                return ((Number) paperAverageTickTime.invoke(Bukkit.getServer())).doubleValue();
+            } catch (Exception ignored) {
+            }
+        }
+        int size = sampleSize;
+        return size == 0 ? TARGET_TICK_MILLIS : intervalSumNanos / (double) size / 1_000_000.0D;
+    }
+
+    public double getTps() {
+        return Math.min(20.0D, 1000.0D / Math.max(TARGET_TICK_MILLIS, getAverageMspt()));
+    }
+
+    public double getLastTickMillis() {
+        return lastIntervalNanos / 1_000_000.0D;
+    }
+
+    public boolean isLagging() {
+        return getAverageMspt() > Config.getLagMsptThreshold();
+    }
+
+    /**
+     * True while the previous tick alone overran by a wide margin, i.e. starting a save now
+     * would land on top of a spike that is still being recovered from.
+     */
+    public boolean isSpiking() {
+        return getLastTickMillis() > Config.getLagMsptThreshold() * 2.0D;
+    }
+
+    /**
+     * Shrinks a per-tick work budget proportionally to how far tick time exceeds the target.
+     */
+    public long scaleBudgetNanos(long budgetNanos) {
+        if (!Config.isTpsAwareEnabled()) {
+            return budgetNanos;
+        }
+        double mspt = getAverageMspt();
+        if (mspt <= TARGET_TICK_MILLIS) {
+            return budgetNanos;
+        }
+        double factor = Math.max(MIN_BUDGET_FACTOR, TARGET_TICK_MILLIS / mspt);
+        return (long) (budgetNanos * factor);
+    }
+
+    public String describe() {
+        return String.format(Locale.ROOT, "%.1fmspt/%.1ftps", getAverageMspt(), getTps());
+    }
+
+    private static Method findPaperAverageTickTime() {
+        try {
+            return Bukkit.getServer().getClass().getMethod("getAverageTickTime");
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+}
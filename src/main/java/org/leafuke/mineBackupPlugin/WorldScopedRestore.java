@@ -0,0 +1,157 @@
+package org.leafuke.mineBackupPlugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.WorldCreator;
+import org.bukkit.entity.Player;
+import org.leafuke.mineBackupPlugin.scheduler.TaskHandle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Restores a single secondary world while the rest of the server keeps running: players are moved to the
+ * primary world, the world is unloaded so the backend can swap its files, and it is loaded again once the
+ * backend reports the restore finished, or an admin runs {@code /mb reload_world}. Without a result the world
+ * is never reloaded on its own: the backend may still be writing its files.
+ */
+final class WorldScopedRestore {
+    private static final AtomicReference<WorldScopedRestore> ACTIVE = new AtomicReference<>(null);
+
+    private final MineBackupPlugin plugin;
+    private final BackupLogger logger;
+    private final LanguageManager languageManager;
+    private final String worldName;
+    private final WorldCreator creator;
+    private final List<UUID> evacuatedPlayers = new ArrayList<>();
+    private TaskHandle reloadTimeoutTask;
+    private long unloadedAtMillis;
+
+    private WorldScopedRestore(MineBackupPlugin plugin, World world) {
+        this.plugin = plugin;
+        this.logger = plugin.getBackupLogger();
+        this.languageManager = plugin.getLanguageManager();
+        this.worldName = world.getName();
+        this.creator = new WorldCreator(worldName).copy(world);
+    }
+
+    static WorldScopedRestore getActive() {
+        return ACTIVE.get();
+    }
+
+    /**
+     * Why {@code world} has to go through a full restart instead, or {@code null} if it can be restored in place.
+     */
+    static String getUnsupportedReason(World world) {
+        if (world == null) {
+            return "target world is not loaded";
+        }
+        List<World> worlds = Bukkit.getWorlds();
+        if (worlds.isEmpty() || worlds.get(0).equals(world)) {
+            return "the primary world cannot be unloaded";
+        }
+        return null;
+    }
+
+    /**
+     * Evacuates and unloads the world. Must run on the main thread. Returns {@code null} when the world could
+     * not be unloaded; it is then still loaded and the caller falls back to a full restart.
+     */
+    static WorldScopedRestore begin(MineBackupPlugin plugin, World world) {
+        WorldScopedRestore restore = new WorldScopedRestore(plugin, world);
+        if (!ACTIVE.compareAndSet(null, restore)) {
+            return null;
+        }
+        if (!restore.evacuateAndUnload(world)) {
+            ACTIVE.set(null);
+            return null;
+        }
+        return restore;
+    }
+
+    private boolean evacuateAndUnload(World world) {
+        Location fallback = Bukkit.getWorlds().get(0).getSpawnLocation();
+        for (Player player : new ArrayList<>(world.getPlayers())) {
+            evacuatedPlayers.add(player.getUniqueId());
+            player.teleport(fallback);
+            languageManager.sendMessage(player, "minebackup.restore.world_evacuated", worldName);
+        }
+        logger.info("RESTORE", "Moved " + evacuatedPlayers.size() + " player(s) out of world '" + worldName + "'.");
+
+        long start = System.currentTimeMillis();
+        if (!Bukkit.unloadWorld(world, true)) {
+            logger.warn("RESTORE", "Failed to unload world '" + worldName + "', falling back to a full restart.");
+            return false;
+        }
+        unloadedAtMillis = System.currentTimeMillis();
+        logger.info("RESTORE", "Unloaded world '" + worldName + "' in " + (unloadedAtMillis - start) + "ms.");
+
+        int timeoutSeconds = Math.max(1, Config.getWorldScopedRestoreTimeoutSeconds());
+        reloadTimeoutTask = plugin.getPluginScheduler().runGlobalLater(() -> {
+            reloadTimeoutTask = null;
+            logger.warn("RESTORE", "No restore result for world '" + worldName + "' after " + timeoutSeconds
+                    + "s. Keeping it unloaded until the main program reports the result or /mb reload_world is run.");
+            notifyAdmins("minebackup.restore.world_still_unloaded", worldName, String.valueOf(timeoutSeconds));
+        }, timeoutSeconds * 20L);
+        return true;
+    }
+
+    String getWorldName() {
+        return worldName;
+    }
+
+    private void notifyAdmins(String key, Object... args) {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            if (player.hasPermission("minebackup.command")) {
+                languageManager.sendMessage(player, key, args);
+            }
+        }
+        languageManager.sendMessage(Bukkit.getConsoleSender(), key, args);
+    }
+
+    /**
+     * Loads the world again and brings evacuated players back. Must run on the main thread.
+     */
+    void finish(boolean restored) {
+        if (!ACTIVE.compareAndSet(this, null)) {
+            return;
+        }
+        if (reloadTimeoutTask != null) {
+            reloadTimeoutTask.cancel();
+            reloadTimeoutTask = null;
+        }
+
+        World world;
+        try {
+            world = Bukkit.createWorld(creator);
+        } catch (Exception e) {
+            world = null;
+            logger.error("RESTORE", "Failed to reload world '" + worldName + "': " + e.getMessage());
+        }
+        HotRestoreState.reset("world reloaded");
+        if (world == null) {
+            languageManager.broadcastMessage("minebackup.restore.world_reload_failed", worldName);
+            return;
+        }
+
+        logger.info("RESTORE", "Reloaded world '" + worldName + "' " + (System.currentTimeMillis() - unloadedAtMillis)
+                + "ms after unloading it (restored=" + restored + ").");
+        plugin.closeRestoreTimeline("world_reloaded");
+        languageManager.broadcastMessage(restored
+                ? "minebackup.restore.world_reloaded"
+                : "minebackup.restore.world_reload_unrestored", worldName);
+
+        Location spawn = world.getSpawnLocation();
+        for (UUID playerId : evacuatedPlayers) {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                if (player.getUniqueId().equals(playerId)) {
+                    player.teleport(spawn);
+                    break;
+                }
+            }
+        }
+    }
+}
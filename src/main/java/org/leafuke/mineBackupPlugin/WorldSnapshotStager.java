@@ -0,0 +1,46 @@
+package org.leafuke.mineBackupPlugin;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Builds a point-in-time copy of a world folder that the backend can archive after auto-save is unfrozen.
+ * <p>
+ * Only files the server replaces atomically (write temp file, then rename) are hard-linked: later saves
+ * swap the directory entry and leave the staged inode untouched. Region-style files are rewritten in
+ * place, so a hard link would keep changing underneath the backup; those are always copied.
+ * <p>
+ * The staging directory is kept between backups so the next staging only copies files that changed.
+ */
+public final class WorldSnapshotStager {
+    private static final String SESSION_LOCK = "session.lock";
+
+    private final Path stagingRoot;
+
+    public WorldSnapshotStager(Path stagingRoot) {
+        this.stagingRoot = stagingRoot;
+    }
+
+    public Path getStagingDirectory(String worldName) {
+        return stagingRoot.resolve(worldName);
+    }
+
+    public WorldStagingCopier.Result stage(Path worldFolder, Path target) throws IOException {
+        WorldStagingCopier copier = new WorldStagingCopier(Config.getSnapshotCopyThreads(),
+                Config.getSnapshotMaxConcurrentCopies());
+        return copier.mirror(worldFolder, target,
+                relative -> relative.getNameCount() == 1 && relative.getFileName().toString().equals(SESSION_LOCK),
+                WorldSnapshotStager::isReplacedAtomically);
+    }
+
+    private static boolean isReplacedAtomically(Path relativePath) {
+        String name = relativePath.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.equals("level.dat") || name.equals("level.dat_old")) {
+            return true;
+        }
+        Path parent = relativePath.getParent();
+        return parent != null && parent.getFileName().toString().equals("playerdata")
+                && (name.endsWith(".dat") || name.endsWith(".dat_old"));
+    }
+}
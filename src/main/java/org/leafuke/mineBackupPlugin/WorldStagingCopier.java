@@ -0,0 +1,250 @@
+package org.leafuke.mineBackupPlugin;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Mirrors a world folder into a staging folder as fast as the disk allows: directories are walked in
+ * parallel on a fork-join pool, file contents move through {@link FileChannel#transferTo} (kernel-side
+ * copy where the platform supports it), at most a bounded number of files are copied at once, and files
+ * whose size and modification time match the previous staging are skipped. Files that no longer exist in
+ * the source are removed from the target.
+ */
+public final class WorldStagingCopier {
+    private final int parallelism;
+    private final int maxConcurrentCopies;
+
+    public WorldStagingCopier(int parallelism, int maxConcurrentCopies) {
+        this.parallelism = Math.max(1, parallelism);
+        this.maxConcurrentCopies = Math.max(1, maxConcurrentCopies);
+    }
+
+    /**
+     * @param skipFilter relative paths that are never mirrored (e.g. {@code session.lock})
+     * @param linkFilter relative paths to hard-link instead of copy; falls back to copying when linking fails
+     */
+    public Result mirror(Path source, Path target, Predicate<Path> skipFilter, Predicate<Path> linkFilter)
+            throws IOException {
+        long start = System.nanoTime();
+        Stats stats = new Stats();
+        Semaphore copyPermits = new Semaphore(maxConcurrentCopies);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new DirectoryTask(source, target, Path.of(""), skipFilter, linkFilter, copyPermits, stats));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+        return new Result(target, stats.copiedFiles.get(), stats.copiedBytes.get(), stats.linkedFiles.get(),
+                stats.skippedFiles.get(), stats.skippedBytes.get(), stats.deletedFiles.get(),
+                stats.vanishedFiles.get(), (System.nanoTime() - start) / 1_000_000L);
+    }
+
+    private static final class Stats {
+        private final AtomicInteger copiedFiles = new AtomicInteger();
+        private final AtomicLong copiedBytes = new AtomicLong();
+        private final AtomicInteger linkedFiles = new AtomicInteger();
+        private final AtomicInteger skippedFiles = new AtomicInteger();
+        private final AtomicLong skippedBytes = new AtomicLong();
+        private final AtomicInteger deletedFiles = new AtomicInteger();
+        private final AtomicInteger vanishedFiles = new AtomicInteger();
+    }
+
+    private static final class DirectoryTask extends RecursiveAction {
+        private final Path sourceRoot;
+        private final Path targetRoot;
+        private final Path relativeDirectory;
+        private final Predicate<Path> skipFilter;
+        private final Predicate<Path> linkFilter;
+        private final Semaphore copyPermits;
+        private final Stats stats;
+
+        private DirectoryTask(Path sourceRoot, Path targetRoot, Path relativeDirectory, Predicate<Path> skipFilter,
+                              Predicate<Path> linkFilter, Semaphore copyPermits, Stats stats) {
+            this.sourceRoot = sourceRoot;
+            this.targetRoot = targetRoot;
+            this.relativeDirectory = relativeDirectory;
+            this.skipFilter = skipFilter;
+            this.linkFilter = linkFilter;
+            this.copyPermits = copyPermits;
+            this.stats = stats;
+        }
+
+        @Override
+        protected void compute() {
+            Path sourceDirectory = sourceRoot.resolve(relativeDirectory.toString());
+            Path targetDirectory = targetRoot.resolve(relativeDirectory.toString());
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            Set<String> sourceNames = new HashSet<>();
+            try {
+                Files.createDirectories(targetDirectory);
+                DirectoryStream<Path> entries;
+                try {
+                    entries = Files.newDirectoryStream(sourceDirectory);
+                } catch (NoSuchFileException e) {
+                    if (relativeDirectory.toString().isEmpty()) {
+                        throw e;
+                    }
+                    // Removed after the parent listed it; mirror that.
+                    deleteRecursively(targetDirectory);
+                    return;
+                }
+                try (entries) {
+                    for (Path entry : entries) {
+                        String name = entry.getFileName().toString();
+                        Path relative = relativeDirectory.resolve(name);
+                        if (skipFilter.test(relative)) {
+                            continue;
+                        }
+                        sourceNames.add(name);
+                        try {
+                            BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class,
+                                    LinkOption.NOFOLLOW_LINKS);
+                            if (attributes.isDirectory()) {
+                                DirectoryTask child = new DirectoryTask(sourceRoot, targetRoot, relative, skipFilter,
+                                        linkFilter, copyPermits, stats);
+                                child.fork();
+                                subdirectories.add(child);
+                            } else if (attributes.isRegularFile()) {
+                                stageFile(entry, targetDirectory.resolve(name), relative, attributes);
+                            }
+                        } catch (NoSuchFileException e) {
+                            // Auto-save is frozen, but the server still replaces playerdata (temp file and
+                            // rename) when a player quits. A file gone mid-walk is treated as never listed.
+                            sourceNames.remove(name);
+                            stats.vanishedFiles.incrementAndGet();
+                        }
+                    }
+                }
+                removeStaleEntries(targetDirectory, sourceNames);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            for (DirectoryTask child : subdirectories) {
+                child.join();
+            }
+        }
+
+        private void stageFile(Path source, Path target, Path relative, BasicFileAttributes sourceAttributes)
+                throws IOException {
+            if (linkFilter.test(relative)) {
+                if (Files.exists(target) && Files.isSameFile(source, target)) {
+                    stats.skippedFiles.incrementAndGet();
+                    stats.skippedBytes.addAndGet(sourceAttributes.size());
+                    return;
+                }
+                Files.deleteIfExists(target);
+                try {
+                    Files.createLink(target, source);
+                    stats.linkedFiles.incrementAndGet();
+                    return;
+                } catch (IOException | UnsupportedOperationException | SecurityException ignored) {
+                }
+            } else if (isUnchanged(target, sourceAttributes)) {
+                stats.skippedFiles.incrementAndGet();
+                stats.skippedBytes.addAndGet(sourceAttributes.size());
+                return;
+            }
+
+            copyPermits.acquireUninterruptibly();
+            try {
+                long copied = transfer(source, target);
+                Files.setLastModifiedTime(target, sourceAttributes.lastModifiedTime());
+                stats.copiedFiles.incrementAndGet();
+                stats.copiedBytes.addAndGet(copied);
+            } finally {
+                copyPermits.release();
+            }
+        }
+
+        private static boolean isUnchanged(Path target, BasicFileAttributes sourceAttributes) throws IOException {
+            if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                return false;
+            }
+            BasicFileAttributes targetAttributes = Files.readAttributes(target, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            FileTime sourceModified = sourceAttributes.lastModifiedTime();
+            return targetAttributes.isRegularFile()
+                    && targetAttributes.size() == sourceAttributes.size()
+                    && targetAttributes.lastModifiedTime().equals(sourceModified);
+        }
+
+        private static long transfer(Path source, Path target) throws IOException {
+            // A previous staging may have left a hard link here; never write through it into the live world.
+            Files.deleteIfExists(target);
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long size = in.size();
+                long position = 0L;
+                while (position < size) {
+                    long transferred = in.transferTo(position, size - position, out);
+                    if (transferred <= 0L) {
+                        break;
+                    }
+                    position += transferred;
+                }
+                return position;
+            }
+        }
+
+        private void removeStaleEntries(Path targetDirectory, Set<String> sourceNames) throws IOException {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(targetDirectory)) {
+                for (Path entry : entries) {
+                    if (!sourceNames.contains(entry.getFileName().toString())) {
+                        deleteRecursively(entry);
+                        stats.deletedFiles.incrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    public record Result(Path directory, int copiedFiles, long copiedBytes, int linkedFiles, int skippedFiles,
+                         long skippedBytes, int deletedFiles, int vanishedFiles, long elapsedMillis) {
+        public double throughputMbPerSecond() {
+            return elapsedMillis <= 0L ? copiedBytes / 1_048_576.0D * 1000.0D
+                    : copiedBytes / 1_048_576.0D / (elapsedMillis / 1000.0D);
+        }
+
+        public String toLogMessage() {
+            return String.format(Locale.ROOT,
+                    "Staged %s in %dms: copied=%d file(s)/%.1fMB (%.1fMB/s), linked=%d, unchanged=%d file(s)/%.1fMB, removed=%d, vanished=%d",
+                    directory, elapsedMillis, copiedFiles, copiedBytes / 1_048_576.0D, throughputMbPerSecond(),
+                    linkedFiles, skippedFiles, skippedBytes / 1_048_576.0D, deletedFiles, vanishedFiles);
+        }
+    }
+}
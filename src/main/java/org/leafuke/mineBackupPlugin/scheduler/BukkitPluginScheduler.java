@@ -0,0 +1,80 @@
+package org.leafuke.mineBackupPlugin.scheduler;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+final class BukkitPluginScheduler implements PluginScheduler {
+    private final Plugin plugin;
+
+    BukkitPluginScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public TaskHandle runGlobal(Runnable task) {
+        return wrap(Bukkit.getScheduler().runTask(plugin, task));
+    }
+
+    @Override
+    public TaskHandle runGlobalLater(Runnable task, long delayTicks) {
+        return wrap(Bukkit.getScheduler().runTaskLater(plugin, task, delayTicks));
+    }
+
+    @Override
+    public TaskHandle runGlobalTimer(Consumer<TaskHandle> task, long delayTicks, long periodTicks) {
+        // Bukkit never runs a timer inline, so the handle is always set before the first run.
+        AtomicReference<TaskHandle> handle = new AtomicReference<>();
+        handle.set(wrap(Bukkit.getScheduler().runTaskTimer(plugin, () -> task.accept(handle.get()), delayTicks, periodTicks)));
+        return handle.get();
+    }
+
+    @Override
+    public void runAtEntity(Entity entity, Runnable task) {
+        Bukkit.getScheduler().runTask(plugin, task);
+    }
+
+    @Override
+    public void runAtLocation(Location location, Runnable task) {
+        Bukkit.getScheduler().runTask(plugin, task);
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, task);
+    }
+
+    @Override
+    public boolean isGlobalThread() {
+        return Bukkit.isPrimaryThread();
+    }
+
+    @Override
+    public boolean isOwnedByCurrentThread(Entity entity) {
+        return Bukkit.isPrimaryThread();
+    }
+
+    @Override
+    public String getName() {
+        return "bukkit";
+    }
+
+    private static TaskHandle wrap(BukkitTask task) {
+        return new TaskHandle() {
+            @Override
+            public void cancel() {
+                task.cancel();
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return task.isCancelled();
+            }
+        };
+    }
+}
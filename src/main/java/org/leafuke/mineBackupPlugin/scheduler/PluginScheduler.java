@@ -0,0 +1,66 @@
+package org.leafuke.mineBackupPlugin.scheduler;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+
+import java.util.function.Consumer;
+
+/**
+ * Thread-placement abstraction over the server scheduler. Every "global", "region" and "entity"
+ * task runs on the single main thread exactly as {@code BukkitScheduler} would run it; callers
+ * still name what the work touches, so each call site states its threading assumption.
+ */
+public interface PluginScheduler {
+    /**
+     * Runs on the thread that owns server-wide state (the main thread).
+     */
+    TaskHandle runGlobal(Runnable task);
+
+    TaskHandle runGlobalLater(Runnable task, long delayTicks);
+
+    TaskHandle runGlobalTimer(Consumer<TaskHandle> task, long delayTicks, long periodTicks);
+
+    /**
+     * Runs on the thread that owns the entity. The task is dropped if the entity is removed first.
+     */
+    void runAtEntity(Entity entity, Runnable task);
+
+    /**
+     * Runs on the thread that owns the region containing the location.
+     */
+    void runAtLocation(Location location, Runnable task);
+
+    void runAsync(Runnable task);
+
+    boolean isGlobalThread();
+
+    boolean isOwnedByCurrentThread(Entity entity);
+
+    String getName();
+
+    default TaskHandle runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        return runGlobalTimer(handle -> task.run(), delayTicks, periodTicks);
+    }
+
+    /**
+     * Runs the task inline when the current thread already owns the entity, otherwise schedules it.
+     */
+    default void executeAtEntity(Entity entity, Runnable task) {
+        if (isOwnedByCurrentThread(entity)) {
+            task.run();
+        } else {
+            runAtEntity(entity, task);
+        }
+    }
+
+    /**
+     * Runs the task inline on the global thread, otherwise schedules it there.
+     */
+    default void executeGlobal(Runnable task) {
+        if (isGlobalThread()) {
+            task.run();
+        } else {
+            runGlobal(task);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.leafuke.mineBackupPlugin.scheduler;
+
+import org.bukkit.plugin.Plugin;
+
+public final class PluginSchedulers {
+    private PluginSchedulers() {
+    }
+
+    public static PluginScheduler create(Plugin plugin) {
+        return new BukkitPluginScheduler(plugin);
+    }
+}
@@ -0,0 +1,7 @@
+package org.leafuke.mineBackupPlugin.scheduler;
+
+public interface TaskHandle {
+    void cancel();
+
+    boolean isCancelled();
+}
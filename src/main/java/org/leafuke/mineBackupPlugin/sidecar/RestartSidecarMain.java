@@ -1,38 +1,177 @@
 package org.leafuke.mineBackupPlugin.sidecar;
 
+import org.leafuke.mineBackupPlugin.RelayRing;
 import org.leafuke.mineBackupPlugin.RestartRelayStore;
+import org.leafuke.mineBackupPlugin.RestoreTimeline;
 import org.leafuke.mineBackupPlugin.knotlink.SignalSubscriber;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.time.Instant;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 public final class RestartSidecarMain {
     private static final String BROADCAST_APP_ID = "0x00000020";
     private static final String BROADCAST_SIGNAL_ID = "0x00000020";
+    private static final int CONTROL_READ_TIMEOUT_MILLIS = 2000;
+    private static final long PARENT_EXIT_GRACE_MILLIS = 2000L;
+    private static final long WORLD_LOCK_TIMEOUT_MILLIS = 5000L;
+    private static final CompletableFuture<Long> PARENT_PIPE_CLOSED = new CompletableFuture<>();
+
+    /** {@code PING|token}, answered with {@code PONG}. */
+    public static final String COMMAND_PING = "PING";
+    /** {@code ARM|token|sessionId|relayTimeoutSeconds|base64(restartScript)}, answered with {@code OK}. */
+    public static final String COMMAND_ARM = "ARM";
+    /** Printed on stdout, followed by the session id, once the sidecar relays events for that session. */
+    public static final String READY_LINE_PREFIX = "READY ";
 
     private RestartSidecarMain() {
     }
 
     public static void main(String[] args) throws Exception {
         Map<String, String> arguments = parseArgs(args);
+        watchParentPipe();
+        if ("daemon".equals(arguments.get("mode"))) {
+            runDaemon(arguments);
+            return;
+        }
+
+        Path dataDirectory = Path.of(require(arguments, "data-dir"));
+        runSession(
+                dataDirectory,
+                Path.of(require(arguments, "work-dir")),
+                Long.parseLong(require(arguments, "parent-pid")),
+                Integer.parseInt(require(arguments, "relay-timeout-seconds")),
+                require(arguments, "session-id"),
+                require(arguments, "restart-script"),
+                optionalPath(arguments, "world-dir"),
+                RelayRing.FsyncPolicy.parse(arguments.get("relay-fsync")),
+                () -> {
+                }
+        );
+    }
+
+    /**
+     * Warm mode: started with the server, the sidecar idles on a loopback socket until the plugin arms it with a
+     * relay session at restore time, so no JVM has to be launched while the server is going down. Exits on its
+     * own if the server stops without arming it.
+     */
+    private static void runDaemon(Map<String, String> arguments) throws Exception {
         Path dataDirectory = Path.of(require(arguments, "data-dir"));
         Path workDirectory = Path.of(require(arguments, "work-dir"));
         long parentPid = Long.parseLong(require(arguments, "parent-pid"));
-        int relayTimeoutSeconds = Integer.parseInt(require(arguments, "relay-timeout-seconds"));
-        String sessionId = require(arguments, "session-id");
-        String restartScript = require(arguments, "restart-script");
+        long processId = ProcessHandle.current().pid();
+        String token = UUID.randomUUID().toString();
 
+        ServerSocket server = new ServerSocket(0, 4, InetAddress.getLoopbackAddress());
+        AtomicBoolean armed = new AtomicBoolean(false);
+        ProcessHandle parent = ProcessHandle.of(parentPid).orElse(null);
+        if (parent == null) {
+            server.close();
+            return;
+        }
+        parent.onExit().thenRun(() -> {
+            if (!armed.get()) {
+                closeQuietly(server);
+            }
+        });
+        RestartRelayStore.writeDaemonEndpoint(dataDirectory,
+                new RestartRelayStore.DaemonEndpoint(server.getLocalPort(), token, processId, parentPid));
+
+        try {
+            while (true) {
+                Socket client;
+                try {
+                    client = server.accept();
+                } catch (SocketException closed) {
+                    return;
+                }
+                try (client) {
+                    client.setSoTimeout(CONTROL_READ_TIMEOUT_MILLIS);
+                    BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                    Writer writer = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8);
+                    String[] parts = String.valueOf(reader.readLine()).split("\\|", -1);
+                    if (parts.length < 2 || !token.equals(parts[1])) {
+                        writer.write("ERR unauthorized\n");
+                    } else if (COMMAND_PING.equals(parts[0])) {
+                        writer.write("PONG\n");
+                    } else if (COMMAND_ARM.equals(parts[0]) && parts.length == 5 && armed.compareAndSet(false, true)) {
+                        // The reply is sent once the subscriber is listening and the ready marker is written, so
+                        // the plugin can treat "OK" exactly like a cold sidecar's ready marker.
+                        runSession(
+                                dataDirectory,
+                                workDirectory,
+                                parentPid,
+                                Integer.parseInt(parts[3]),
+                                parts[2],
+                                new String(Base64.getDecoder().decode(parts[4]), StandardCharsets.UTF_8),
+                                optionalPath(arguments, "world-dir"),
+                                RelayRing.FsyncPolicy.parse(arguments.get("relay-fsync")),
+                                () -> {
+                                    try {
+                                        writer.write("OK\n");
+                                        writer.flush();
+                                    } catch (IOException ignored) {
+                                    }
+                                    RestartRelayStore.deleteDaemonEndpoint(dataDirectory, processId);
+                                    closeQuietly(server);
+                                }
+                        );
+                        return;
+                    } else {
+                        writer.write("ERR unknown command\n");
+                    }
+                    writer.flush();
+                } catch (IOException e) {
+                    System.err.println("[MineBackup-Sidecar] Control connection failed: " + e.getMessage());
+                }
+            }
+        } finally {
+            RestartRelayStore.deleteDaemonEndpoint(dataDirectory, processId);
+            closeQuietly(server);
+        }
+    }
+
+    private static void runSession(Path dataDirectory, Path workDirectory, long parentPid, int relayTimeoutSeconds,
+                                   String sessionId, String restartScript, Path worldDirectory,
+                                   RelayRing.FsyncPolicy fsyncPolicy, Runnable onReady) throws Exception {
         AtomicLong relaySequence = new AtomicLong(0L);
+        RelayRing ring = RelayRing.open(dataDirectory, true);
         SignalSubscriber subscriber = new SignalSubscriber(BROADCAST_APP_ID, BROADCAST_SIGNAL_ID);
         subscriber.setSignalListener(payload -> {
             if (!shouldRelayPayload(payload)) {
                 return;
             }
             try {
-                RestartRelayStore.appendRelayEvent(dataDirectory, relaySequence.incrementAndGet(), payload);
+                if (ring.append(relaySequence.incrementAndGet(), payload, fsyncPolicy) == null) {
+                    System.err.println("[MineBackup-Sidecar] Relay ring full, dropped event: " + payload);
+                }
             } catch (Exception e) {
                 System.err.println("[MineBackup-Sidecar] Failed to persist relay event: " + e.getMessage());
             }
@@ -42,39 +181,165 @@ public final class RestartSidecarMain {
         subscriberThread.setDaemon(true);
         subscriberThread.start();
 
-        RestartRelayStore.markSidecarReady(dataDirectory, sessionId, ProcessHandle.current().pid());
-        waitForParentExit(parentPid);
-        launchRestartScript(workDirectory, restartScript);
+        ring.markReady(sessionId, ProcessHandle.current().pid());
+        System.out.println(READY_LINE_PREFIX + sessionId);
+        System.out.flush();
+        onReady.run();
+        long exitedAtMillis = waitForParentExit(parentPid);
+        if (!ring.isCommitted(sessionId)) {
+            log("Server stopped without committing relay session " + sessionId + ", not relaunching it.");
+            subscriber.stop();
+            ring.close();
+            return;
+        }
+        RestoreTimeline.mark(dataDirectory, RestoreTimeline.SIDECAR_EXIT_DETECTED);
+        if (worldDirectory != null) {
+            waitForWorldLockRelease(worldDirectory);
+        }
+        Process restartedServer = launchRestartScript(workDirectory, restartScript);
+        long launchedAtMillis = Instant.now().toEpochMilli();
+        RestoreTimeline.mark(dataDirectory, RestoreTimeline.SCRIPT_LAUNCH);
+        log("Restart script launched " + (launchedAtMillis - exitedAtMillis)
+                + "ms after the server exited (pid " + restartedServer.pid() + ").");
+        restartedServer.onExit().thenAccept(process -> log("Restarted server process exited with code "
+                + process.exitValue() + " after " + (Instant.now().toEpochMilli() - launchedAtMillis) + "ms."));
+
+        long deadline = launchedAtMillis + relayTimeoutSeconds * 1000L;
+        if (awaitRelayAcknowledged(dataDirectory, sessionId, deadline)) {
+            log("Restarted server acknowledged the relay after "
+                    + (Instant.now().toEpochMilli() - launchedAtMillis) + "ms, stopping relay.");
+        } else {
+            log("Relay timeout reached without acknowledgement.");
+        }
+
+        subscriber.stop();
+        ring.close();
+    }
+
+    private static void closeQuietly(ServerSocket server) {
+        try {
+            server.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Our stdin is a pipe from the server JVM, so it reaches EOF the moment that process dies. This fires far
+     * sooner than {@link ProcessHandle#onExit()}, which can only poll for a process that is not our child.
+     */
+    private static void watchParentPipe() {
+        Thread watcher = new Thread(() -> {
+            try {
+                while (System.in.read() >= 0) {
+                    // The plugin never writes to us; drain anything unexpected.
+                }
+            } catch (IOException ignored) {
+            }
+            PARENT_PIPE_CLOSED.complete(Instant.now().toEpochMilli());
+        }, "minebackup-sidecar-parent-pipe");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Blocks until the server process is gone and returns when that was noticed. The pipe can also close while
+     * the server lives on (its {@code Process} handle was collected after a plugin reload); the server is then
+     * given a short grace period before falling back to {@code onExit()}.
+     */
+    private static long waitForParentExit(long parentPid) {
+        ProcessHandle handle = ProcessHandle.of(parentPid).orElse(null);
+        if (handle == null) {
+            return Instant.now().toEpochMilli();
+        }
+
+        CompletableFuture<ProcessHandle> exited = handle.onExit();
+        try {
+            CompletableFuture.anyOf(exited, PARENT_PIPE_CLOSED).get();
+            long graceDeadline = Instant.now().toEpochMilli() + PARENT_EXIT_GRACE_MILLIS;
+            while (handle.isAlive() && Instant.now().toEpochMilli() < graceDeadline) {
+                Thread.sleep(5L);
+            }
+            if (handle.isAlive()) {
+                exited.get();
+            }
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ignored) {
+        }
+        return Instant.now().toEpochMilli();
+    }
 
-        long deadline = Instant.now().toEpochMilli() + relayTimeoutSeconds * 1000L;
+    /**
+     * Waits until the primary world's {@code session.lock} can be locked, in case the server exits through a
+     * wrapper that outlives the JVM holding the lock.
+     */
+    private static void waitForWorldLockRelease(Path worldDirectory) {
+        Path lockPath = worldDirectory.resolve("session.lock");
+        if (!Files.exists(lockPath)) {
+            return;
+        }
+
+        long start = Instant.now().toEpochMilli();
+        long deadline = start + WORLD_LOCK_TIMEOUT_MILLIS;
         while (Instant.now().toEpochMilli() < deadline) {
+            try (FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.WRITE);
+                 FileLock lock = channel.tryLock()) {
+                if (lock != null) {
+                    log("World lock released after " + (Instant.now().toEpochMilli() - start) + "ms.");
+                    return;
+                }
+            } catch (OverlappingFileLockException | IOException ignored) {
+            }
             try {
-                Thread.sleep(500L);
+                Thread.sleep(10L);
             } catch (InterruptedException ignored) {
                 Thread.currentThread().interrupt();
-                break;
+                return;
             }
         }
-
-        subscriber.stop();
+        log("World lock still held after " + WORLD_LOCK_TIMEOUT_MILLIS + "ms, launching anyway.");
     }
 
-    private static void waitForParentExit(long parentPid) {
-        while (true) {
-            ProcessHandle handle = ProcessHandle.of(parentPid).orElse(null);
-            if (handle == null || !handle.isAlive()) {
-                return;
+    /**
+     * Waits for the restarted plugin to acknowledge the relay, after which it receives broadcasts itself.
+     */
+    private static boolean awaitRelayAcknowledged(Path dataDirectory, String sessionId, long deadline) {
+        try (WatchService watcher = dataDirectory.getFileSystem().newWatchService()) {
+            dataDirectory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            while (!RestartRelayStore.isRelayAcknowledged(dataDirectory, sessionId)) {
+                long remaining = deadline - Instant.now().toEpochMilli();
+                if (remaining <= 0L) {
+                    return false;
+                }
+                WatchKey key = watcher.poll(remaining, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            log("Cannot watch for the relay acknowledgement, waiting for the timeout: " + e.getMessage());
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        while (Instant.now().toEpochMilli() < deadline) {
+            if (RestartRelayStore.isRelayAcknowledged(dataDirectory, sessionId)) {
+                return true;
             }
             try {
-                Thread.sleep(250L);
+                Thread.sleep(500L);
             } catch (InterruptedException ignored) {
                 Thread.currentThread().interrupt();
-                return;
+                break;
             }
         }
+        return false;
     }
 
-    private static void launchRestartScript(Path workDirectory, String restartScript) throws Exception {
+    private static Process launchRestartScript(Path workDirectory, String restartScript) throws Exception {
         Path resolvedScript = workDirectory.resolve(restartScript).normalize();
         ProcessBuilder builder;
         String osName = System.getProperty("os.name", "").toLowerCase();
@@ -84,7 +349,7 @@ public final class RestartSidecarMain {
             builder = new ProcessBuilder("sh", resolvedScript.toString());
         }
         builder.directory(workDirectory.toFile());
-        builder.start();
+        return builder.start();
     }
 
     private static boolean shouldRelayPayload(String payload) {
@@ -126,6 +391,15 @@ public final class RestartSidecarMain {
         return arguments;
     }
 
+    private static Path optionalPath(Map<String, String> arguments, String key) {
+        String value = arguments.get(key);
+        return value == null || value.isBlank() ? null : Path.of(value);
+    }
+
+    private static void log(String message) {
+        System.out.println("[MineBackup-Sidecar] " + message);
+    }
+
     private static String require(Map<String, String> arguments, String key) {
         String value = arguments.get(key);
         if (value == null || value.isBlank()) {
@@ -0,0 +1,118 @@
+package org.leafuke.mineBackupPlugin;
+
+import org.bukkit.World;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncWorldSaverTest {
+    @Test
+    void plainWorldIsUnsupported() {
+        World world = plainWorld();
+
+        assertFalse(AsyncWorldSaver.isSupported(world));
+        assertTrue(AsyncWorldSaver.getUnsupportedReason(world).startsWith("NoSuchMethodException"));
+        assertThrows(IllegalStateException.class, () -> AsyncWorldSaver.save(world));
+    }
+
+    @Test
+    void mojangMappedWorldSavesAndWaitsForRegionIo() throws ReflectiveOperationException {
+        FakeLevel level = new FakeLevel(false);
+        World world = mappedWorld(level);
+
+        assertTrue(AsyncWorldSaver.isSupported(world));
+        CompletableFuture<Void> write = AsyncWorldSaver.save(world);
+        assertTrue(level.saved);
+        assertFalse(write.isDone());
+
+        level.chunkSource.chunkMap.io.complete("written");
+        assertTrue(write.isDone());
+    }
+
+    @Test
+    void worldsThatCannotStartFallBackOneByOne() {
+        World first = mappedWorld(new FakeLevel(false));
+        World broken = mappedWorld(new FakeLevel(true));
+        World last = mappedWorld(new FakeLevel(false));
+        World plain = plainWorld();
+
+        Map<World, Exception> failed = new LinkedHashMap<>();
+        Map<World, CompletableFuture<Void>> pending = AsyncWorldSaver.saveAll(List.of(first, broken, last, plain), failed);
+
+        assertEquals(List.of(first, last), List.copyOf(pending.keySet()));
+        assertEquals(List.of(broken, plain), List.copyOf(failed.keySet()));
+        assertNotNull(failed.get(broken));
+        assertSame(IllegalStateException.class, failed.get(plain).getClass());
+    }
+
+    private static World plainWorld() {
+        return (World) Proxy.newProxyInstance(AsyncWorldSaverTest.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, arguments) -> switch (method.getName()) {
+                    case "getName", "toString" -> "plain";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == arguments[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static World mappedWorld(FakeLevel level) {
+        return (World) Proxy.newProxyInstance(AsyncWorldSaverTest.class.getClassLoader(),
+                new Class<?>[]{World.class, MappedWorld.class},
+                (proxy, method, arguments) -> switch (method.getName()) {
+                    case "getHandle" -> level;
+                    case "getName", "toString" -> "mapped";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == arguments[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /** Shape of a Paper {@code CraftWorld}: {@code getHandle()} returns the server level. */
+    public interface MappedWorld {
+        FakeLevel getHandle();
+    }
+
+    public static final class FakeLevel {
+        private final boolean failSave;
+        private final FakeChunkSource chunkSource = new FakeChunkSource();
+        private boolean saved;
+
+        FakeLevel(boolean failSave) {
+            this.failSave = failSave;
+        }
+
+        public void save(Object progressListener, boolean flush, boolean savingDisabled) {
+            if (failSave) {
+                throw new IllegalStateException("level is closing");
+            }
+            saved = true;
+        }
+
+        public FakeChunkSource getChunkSource() {
+            return chunkSource;
+        }
+    }
+
+    public static final class FakeChunkSource {
+        public final FakeChunkMap chunkMap = new FakeChunkMap();
+    }
+
+    public static final class FakeChunkMap {
+        private final CompletableFuture<Object> io = new CompletableFuture<>();
+
+        public CompletableFuture<Object> synchronize(boolean flush) {
+            return io;
+        }
+    }
+}
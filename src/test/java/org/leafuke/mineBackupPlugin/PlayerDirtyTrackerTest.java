@@ -0,0 +1,66 @@
+package org.leafuke.mineBackupPlugin;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlayerDirtyTrackerTest {
+    private static final long MAX_SKIP_MILLIS = 300_000L;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    private final PlayerDirtyTracker tracker = new PlayerDirtyTracker(() -> MAX_SKIP_MILLIS, clock::get);
+    private final Player player = TestPlayers.player(UUID.randomUUID());
+
+    @Test
+    void joinedPlayerIsDirtyUntilFlushed() {
+        tracker.onJoin(new PlayerJoinEvent(player, "joined"));
+        assertTrue(tracker.isDirty(player));
+
+        tracker.markFlushed(player);
+        assertFalse(tracker.isDirty(player));
+    }
+
+    @Test
+    void cleanPlayerIsReflushedAfterMaxSkip() {
+        tracker.onJoin(new PlayerJoinEvent(player, "joined"));
+        tracker.markFlushed(player);
+
+        clock.addAndGet(MAX_SKIP_MILLIS - 1L);
+        assertFalse(tracker.isDirty(player));
+        clock.addAndGet(1L);
+        assertTrue(tracker.isDirty(player));
+
+        tracker.markFlushed(player);
+        assertFalse(tracker.isDirty(player));
+    }
+
+    @Test
+    void bulkFlushResetsTheFallbackForEveryone() {
+        clock.addAndGet(MAX_SKIP_MILLIS);
+        assertTrue(tracker.isDirty(player));
+
+        tracker.markAllFlushed();
+        assertFalse(tracker.isDirty(player));
+    }
+
+    @Test
+    void zeroMaxSkipDisablesTheFallback() {
+        PlayerDirtyTracker withoutFallback = new PlayerDirtyTracker(() -> 0L, clock::get);
+        clock.addAndGet(24L * 3_600_000L);
+        assertFalse(withoutFallback.isDirty(player));
+    }
+
+    @Test
+    void quitForgetsThePlayer() {
+        tracker.onJoin(new PlayerJoinEvent(player, "joined"));
+        tracker.onQuit(new PlayerQuitEvent(player, "left"));
+        assertFalse(tracker.isDirty(player));
+    }
+}
@@ -0,0 +1,221 @@
+package org.leafuke.mineBackupPlugin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RelayRingTest {
+    // Mirrors RelayRing's layout: records start right after the 1 KiB header, in a 64 KiB ring.
+    private static final int HEADER_BYTES = 1024;
+    private static final int DATA_BYTES = 64 * 1024;
+    private static final int RECORD_OVERHEAD_BYTES = 24;
+
+    @TempDir
+    Path dataDirectory;
+
+    @Test
+    void appendedEventsArePolledOnceInOrder() throws IOException {
+        try (RelayRing ring = openWithSession()) {
+            ring.append(1L, "event=handshake", RelayRing.FsyncPolicy.NEVER);
+            ring.append(2L, "event=rejoin_world;world=§a世界", RelayRing.FsyncPolicy.NEVER);
+
+            List<RestartRelayStore.RelayEvent> events = ring.poll();
+            assertEquals(2, events.size());
+            assertEquals(1L, events.get(0).sequence());
+            assertEquals("event=handshake", events.get(0).payload());
+            assertEquals(2L, events.get(1).sequence());
+            assertEquals("event=rejoin_world;world=§a世界", events.get(1).payload());
+            assertTrue(ring.poll().isEmpty());
+        }
+    }
+
+    @Test
+    void reopenedRingKeepsSessionAndUnreadEvents() throws IOException {
+        try (RelayRing ring = openWithSession()) {
+            ring.append(1L, "event=restore_finished", RelayRing.FsyncPolicy.ALWAYS);
+            ring.append(2L, "event=rejoin_world", RelayRing.FsyncPolicy.ALWAYS);
+            assertEquals(2, ring.poll().size());
+            ring.append(3L, "event=handshake", RelayRing.FsyncPolicy.ALWAYS);
+        }
+
+        try (RelayRing ring = RelayRing.open(dataDirectory, false)) {
+            assertNotNull(ring);
+            RestartRelayStore.Session session = ring.readSession();
+            assertNotNull(session);
+            assertEquals("session-1", session.id());
+            List<RestartRelayStore.RelayEvent> events = ring.poll();
+            assertEquals(1, events.size());
+            assertEquals(3L, events.get(0).sequence());
+        }
+    }
+
+    @Test
+    void fullRingRejectsAppendsUntilConsumed() throws IOException {
+        String payload = "x".repeat(1000);
+        try (RelayRing ring = openWithSession()) {
+            int fits = DATA_BYTES / (RECORD_OVERHEAD_BYTES + payload.length());
+            for (int i = 1; i <= fits; i++) {
+                assertNotNull(ring.append(i, payload, RelayRing.FsyncPolicy.NEVER));
+            }
+            assertNull(ring.append(fits + 1, payload, RelayRing.FsyncPolicy.NEVER));
+
+            assertEquals(fits, ring.poll().size());
+            assertNotNull(ring.append(fits + 1, payload, RelayRing.FsyncPolicy.NEVER));
+        }
+    }
+
+    @Test
+    void recordsWrapAroundTheEndOfTheRing() throws IOException {
+        try (RelayRing ring = openWithSession()) {
+            List<Long> polled = new ArrayList<>();
+            // Odd-sized records, so the ring wraps mid-record several times.
+            for (long sequence = 1L; sequence <= 500L; sequence++) {
+                String payload = "event=backup_progress;seq=" + sequence + ";" + "p".repeat((int) (sequence % 397));
+                assertNotNull(ring.append(sequence, payload, RelayRing.FsyncPolicy.NEVER));
+                if (sequence % 7 == 0) {
+                    for (RestartRelayStore.RelayEvent event : ring.poll()) {
+                        assertTrue(event.payload().startsWith("event=backup_progress;seq=" + event.sequence() + ";"));
+                        polled.add(event.sequence());
+                    }
+                }
+            }
+            ring.poll().forEach(event -> polled.add(event.sequence()));
+
+            assertEquals(500, polled.size());
+            for (int i = 0; i < polled.size(); i++) {
+                assertEquals(i + 1L, polled.get(i).longValue());
+            }
+        }
+    }
+
+    @Test
+    void recordWithBadChecksumIsSkipped() throws IOException {
+        try (RelayRing ring = openWithSession()) {
+            ring.append(1L, "event=handshake", RelayRing.FsyncPolicy.ALWAYS);
+            ring.append(2L, "event=rejoin_world", RelayRing.FsyncPolicy.ALWAYS);
+        }
+        // Flip a payload byte of the first record.
+        writeRingByte(HEADER_BYTES + RECORD_OVERHEAD_BYTES, (byte) '#');
+
+        try (RelayRing ring = RelayRing.open(dataDirectory, false)) {
+            List<RestartRelayStore.RelayEvent> events = ring.poll();
+            assertEquals(1, events.size());
+            assertEquals(2L, events.get(0).sequence());
+        }
+    }
+
+    @Test
+    void partialRecordDropsTheRestOfTheRing() throws IOException {
+        try (RelayRing ring = openWithSession()) {
+            ring.append(1L, "event=handshake", RelayRing.FsyncPolicy.ALWAYS);
+            ring.append(2L, "event=rejoin_world", RelayRing.FsyncPolicy.ALWAYS);
+        }
+        // A length running past the published head, as left by a torn write. Record framing is big-endian.
+        writeRingBytes(HEADER_BYTES, ByteBuffer.allocate(4).putInt(0, 4096).array());
+
+        try (RelayRing ring = RelayRing.open(dataDirectory, false)) {
+            assertTrue(ring.poll().isEmpty());
+            // The consumer skipped past the damage; new records are read normally.
+            ring.append(3L, "event=restore_finished", RelayRing.FsyncPolicy.NEVER);
+            List<RestartRelayStore.RelayEvent> events = ring.poll();
+            assertEquals(1, events.size());
+            assertEquals(3L, events.get(0).sequence());
+        }
+    }
+
+    @Test
+    void damagedHeaderIsReformatted() throws IOException {
+        try (RelayRing ring = openWithSession()) {
+            ring.append(1L, "event=handshake", RelayRing.FsyncPolicy.ALWAYS);
+        }
+        writeRingBytes(0, new byte[8]);
+
+        try (RelayRing ring = RelayRing.open(dataDirectory, false)) {
+            assertNotNull(ring);
+            assertNull(ring.readSession());
+            assertTrue(ring.poll().isEmpty());
+        }
+    }
+
+    @Test
+    void newSessionDiscardsUnreadEvents() throws IOException {
+        try (RelayRing ring = openWithSession()) {
+            ring.append(1L, "event=handshake", RelayRing.FsyncPolicy.NEVER);
+            ring.startSession(new RestartRelayStore.Session("session-2", 2L, 60, "start.sh"));
+
+            assertTrue(ring.poll().isEmpty());
+            assertEquals("session-2", ring.readSession().id());
+        }
+    }
+
+    @Test
+    void appendThroughput() throws IOException {
+        String payload = "event=backup_progress;world=world;bytes_done=123456789;bytes_total=987654321";
+        int events = 200_000;
+        for (RelayRing.FsyncPolicy policy : List.of(RelayRing.FsyncPolicy.NEVER, RelayRing.FsyncPolicy.INTERVAL)) {
+            try (RelayRing ring = openWithSession()) {
+                long delivered = 0L;
+                long start = System.nanoTime();
+                for (long sequence = 1L; sequence <= events; sequence++) {
+                    if (ring.append(sequence, payload, policy) == null) {
+                        delivered += ring.poll().size();
+                        assertNotNull(ring.append(sequence, payload, policy));
+                    }
+                }
+                delivered += ring.poll().size();
+                long elapsedNanos = System.nanoTime() - start;
+
+                assertEquals(events, delivered);
+                double perSecond = events / (elapsedNanos / 1_000_000_000.0D);
+                System.out.printf("RelayRing %s: %d events in %d ms (%.0f events/s)%n",
+                        policy, events, elapsedNanos / 1_000_000L, perSecond);
+                // Loose floor: the relay only carries a handful of events per restart, so this catches only
+                // pathological regressions such as a force() per append under INTERVAL.
+                assertTrue(perSecond > 20_000.0D);
+            }
+        }
+    }
+
+    @Test
+    void oversizedSessionIsRejectedWithoutTouchingTheRing() throws IOException {
+        try (RelayRing ring = openWithSession()) {
+            ring.append(1L, "event=handshake", RelayRing.FsyncPolicy.NEVER);
+            String longScript = "/srv/" + "minecraft/".repeat(60) + "start.sh";
+
+            assertThrows(IOException.class,
+                    () -> ring.startSession(new RestartRelayStore.Session("session-2", 2L, 60, longScript)));
+            assertEquals("session-1", ring.readSession().id());
+            assertEquals(1, ring.poll().size());
+        }
+    }
+
+    private RelayRing openWithSession() throws IOException {
+        RelayRing ring = RelayRing.open(dataDirectory, true);
+        ring.startSession(new RestartRelayStore.Session("session-1", 1L, 60, "start.sh"));
+        return ring;
+    }
+
+    private void writeRingByte(int position, byte value) throws IOException {
+        writeRingBytes(position, new byte[]{value});
+    }
+
+    private void writeRingBytes(int position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(RestartRelayStore.getRingPath(dataDirectory),
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+}
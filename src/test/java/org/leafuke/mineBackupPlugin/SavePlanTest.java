@@ -0,0 +1,92 @@
+package org.leafuke.mineBackupPlugin;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SavePlanTest {
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+    private final PlayerDirtyTracker tracker = new PlayerDirtyTracker(() -> 300_000L, clock::get);
+
+    @Test
+    void dirtyOnlySkipsCleanPlayers() {
+        List<Player> online = TestPlayers.players(300);
+        for (int i = 0; i < online.size(); i++) {
+            if (i % 10 != 0) {
+                tracker.markFlushed(online.get(i));
+            } else {
+                tracker.onJoin(new PlayerJoinEvent(online.get(i), "joined"));
+            }
+        }
+
+        SavePlan plan = SavePlan.create(SavePlan.PlayerFlushMode.DIRTY_ONLY, tracker, online, List.of());
+        assertEquals(SavePlan.PlayerFlushMode.DIRTY_ONLY, plan.getPlayerFlushMode());
+        assertEquals(300, plan.getOnlinePlayerCount());
+        assertEquals(30, plan.getPlayers().size());
+        assertEquals(270, plan.getSkippedPlayerCount());
+
+        // Past the fallback window nobody may be skipped any more.
+        clock.addAndGet(300_000L);
+        assertEquals(300, SavePlan.create(SavePlan.PlayerFlushMode.DIRTY_ONLY, tracker, online, List.of())
+                .getPlayers().size());
+    }
+
+    @Test
+    void otherModesTargetEveryone() {
+        List<Player> online = TestPlayers.players(50);
+        tracker.markAllFlushed();
+
+        assertEquals(50, SavePlan.create(SavePlan.PlayerFlushMode.BULK, tracker, online, List.of())
+                .getPlayers().size());
+        assertEquals(50, SavePlan.create(SavePlan.PlayerFlushMode.PER_PLAYER, tracker, online, List.of())
+                .getPlayers().size());
+    }
+
+    @Test
+    void dirtyOnlyWithoutTrackerFallsBackToPerPlayer() {
+        SavePlan plan = SavePlan.create(SavePlan.PlayerFlushMode.DIRTY_ONLY, null, TestPlayers.players(5), List.of());
+        assertEquals(SavePlan.PlayerFlushMode.PER_PLAYER, plan.getPlayerFlushMode());
+        assertEquals(5, plan.getPlayers().size());
+    }
+
+    /**
+     * Times plan selection for each flush mode over a few hundred players. This is the part of a save the mode
+     * choice adds on the main thread; the saves themselves are timed per phase in the save log.
+     */
+    @Test
+    void planSelectionBenchmark() {
+        List<Player> online = TestPlayers.players(500);
+        for (int i = 0; i < online.size(); i++) {
+            if (i % 4 == 0) {
+                tracker.onJoin(new PlayerJoinEvent(online.get(i), "joined"));
+            } else {
+                tracker.markFlushed(online.get(i));
+            }
+        }
+
+        int iterations = 2_000;
+        for (SavePlan.PlayerFlushMode mode : SavePlan.PlayerFlushMode.values()) {
+            int selected = 0;
+            for (int i = 0; i < iterations / 4; i++) {
+                selected += SavePlan.create(mode, tracker, online, List.of()).getPlayers().size();
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                selected += SavePlan.create(mode, tracker, online, List.of()).getPlayers().size();
+            }
+            long micros = (System.nanoTime() - start) / 1_000L;
+            System.out.printf("SavePlan %s: %d players online, %d selected, %.1f us per plan%n",
+                    mode.getConfigName(), online.size(), SavePlan.create(mode, tracker, online, List.of())
+                            .getPlayers().size(), (double) micros / iterations);
+            assertTrue(selected > 0);
+            // A plan is built once per save; this only catches selection becoming pathologically slow.
+            assertTrue(micros / iterations < 5_000L);
+        }
+    }
+}
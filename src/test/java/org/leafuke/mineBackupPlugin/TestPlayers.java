@@ -0,0 +1,34 @@
+package org.leafuke.mineBackupPlugin;
+
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/** Minimal {@link Player} stand-ins: only the identity methods the save planning code touches are answered. */
+final class TestPlayers {
+    private TestPlayers() {
+    }
+
+    static Player player(UUID id) {
+        return (Player) Proxy.newProxyInstance(TestPlayers.class.getClassLoader(), new Class<?>[]{Player.class},
+                (proxy, method, arguments) -> switch (method.getName()) {
+                    case "getUniqueId" -> id;
+                    case "getName", "toString" -> "player-" + id;
+                    case "isOnline" -> true;
+                    case "hashCode" -> id.hashCode();
+                    case "equals" -> proxy == arguments[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    static List<Player> players(int count) {
+        List<Player> players = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            players.add(player(new UUID(0L, i)));
+        }
+        return players;
+    }
+}
@@ -0,0 +1,77 @@
+package org.leafuke.mineBackupPlugin;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorldStagingCopierTest {
+    @TempDir
+    Path temporary;
+
+    @Test
+    void mirrorsAndSkipsUnchangedFiles() throws IOException {
+        Path world = temporary.resolve("world");
+        Path staging = temporary.resolve("staging");
+        write(world.resolve("level.dat"), "level");
+        write(world.resolve("region/r.0.0.mca"), "region");
+        write(world.resolve("session.lock"), "lock");
+
+        WorldStagingCopier copier = new WorldStagingCopier(2, 2);
+        WorldStagingCopier.Result first = copier.mirror(world, staging,
+                relative -> relative.toString().equals("session.lock"), relative -> false);
+        assertEquals(2, first.copiedFiles());
+        assertFalse(Files.exists(staging.resolve("session.lock")));
+        assertEquals("region", Files.readString(staging.resolve("region/r.0.0.mca")));
+
+        Files.delete(world.resolve("level.dat"));
+        WorldStagingCopier.Result second = copier.mirror(world, staging,
+                relative -> relative.toString().equals("session.lock"), relative -> false);
+        assertEquals(0, second.copiedFiles());
+        assertEquals(1, second.skippedFiles());
+        assertEquals(1, second.deletedFiles());
+        assertFalse(Files.exists(staging.resolve("level.dat")));
+    }
+
+    @Test
+    void fileVanishingMidWalkIsSkipped() throws IOException {
+        Path world = temporary.resolve("world");
+        Path staging = temporary.resolve("staging");
+        Path playerData = world.resolve("playerdata/0000.dat");
+        write(playerData, "player");
+        write(world.resolve("playerdata/0000.dat_old"), "old");
+        write(world.resolve("level.dat"), "level");
+        // An earlier staging already holds the file that is about to vanish.
+        write(staging.resolve("playerdata/0000.dat_old"), "stale");
+
+        // The filter runs right after the entry is listed, so deleting here reproduces a quit-time rename.
+        WorldStagingCopier.Result result = new WorldStagingCopier(2, 2).mirror(world, staging, relative -> {
+            if (relative.toString().endsWith(".dat_old")) {
+                try {
+                    Files.deleteIfExists(world.resolve(relative.toString()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return false;
+        }, relative -> false);
+
+        assertEquals(1, result.vanishedFiles());
+        assertEquals(2, result.copiedFiles());
+        assertTrue(Files.exists(staging.resolve("playerdata/0000.dat")));
+        assertFalse(Files.exists(staging.resolve("playerdata/0000.dat_old")));
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+}